@@ -0,0 +1,82 @@
+package webdata;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Synthetic data for the benchmarks, generated from a fixed seed so runs can be compared between versions.
+ * Terms follow a Zipf-like distribution (the rank of a term is log-uniform), like the words of real reviews.
+ */
+public class BenchData {
+    public static final long SEED = 42;
+
+    private BenchData() {
+    }
+
+    /**
+     * @return numTerms distinct lowercase terms, of 1 to 10 letters.
+     */
+    public static String[] vocabulary(int numTerms, Random random) {
+        String[] terms = new String[numTerms];
+        for (int i = 0; i < numTerms; i++) {
+            StringBuilder term = new StringBuilder();
+            int length = 1 + random.nextInt(10);
+            for (int j = 0; j < length; j++) {
+                term.append((char) ('a' + random.nextInt(26)));
+            }
+            term.append(i);  // keeps the terms distinct
+            terms[i] = term.toString();
+        }
+        return terms;
+    }
+
+    /**
+     * @return a random index between 0 and n - 1, where low indices are much more likely (log-uniform).
+     */
+    public static int zipfIndex(int n, Random random) {
+        return (int) Math.pow(n, random.nextDouble()) - 1;
+    }
+
+    /**
+     * @return numValues values of a posting list: review id gaps with a Zipf-like distribution, each followed by a
+     * term frequency.
+     */
+    public static int[] postingValues(int numValues) {
+        Random random = new Random(SEED);
+        int[] values = new int[numValues];
+        for (int i = 0; i < numValues; i++) {
+            values[i] = i % 2 == 0 ? zipfIndex(5000, random) : zipfIndex(4, random);
+        }
+        return values;
+    }
+
+    /**
+     * Write numReviews reviews in the format of the input files to the given file. Every product has 20 reviews, and
+     * every review text has 20 to 150 terms of a 50000 terms vocabulary.
+     */
+    public static void writeReviews(File file, int numReviews) throws IOException {
+        Random random = new Random(SEED);
+        String[] terms = vocabulary(50000, random);
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < numReviews; i++) {
+                out.write("product/productId: B" + String.format("%09d", i / 20) + "\n");
+                out.write("review/userId: U" + i + "\n");
+                out.write("review/profileName: Name " + i + "\n");
+                int denominator = random.nextInt(20);
+                out.write("review/helpfulness: " + random.nextInt(denominator + 1) + "/" + denominator + "\n");
+                out.write("review/score: " + (1 + random.nextInt(5)) + ".0\n");
+                out.write("review/time: " + (1300000000 + i) + "\n");
+                out.write("review/summary: summary " + i + "\n");
+                out.write("review/text:");
+                int length = 20 + random.nextInt(131);
+                for (int j = 0; j < length; j++) {
+                    out.write(" " + terms[zipfIndex(terms.length, random)]);
+                }
+                out.write("\n\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package webdata;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntSupplier;
+
+/**
+ * Times small operations for the benchmarks. An operation returns an int that is added to a sink, so the JIT
+ * compiler cannot remove its work.
+ */
+public class BenchTimer {
+    public static final long WARMUP_MILLIS = 500;
+    public static final long MEASURE_MILLIS = 1000;
+
+    private static volatile int sink;
+
+    private BenchTimer() {
+    }
+
+    /**
+     * Run the given operation for WARMUP_MILLIS, and then measure it for at least MEASURE_MILLIS.
+     * @return the average time of a single run in nanoseconds.
+     */
+    public static double nanosPerRun(IntSupplier operation) {
+        run(operation, WARMUP_MILLIS * 1_000_000);
+        long start = System.nanoTime();
+        long runs = run(operation, MEASURE_MILLIS * 1_000_000);
+        return (double) (System.nanoTime() - start) / runs;
+    }
+
+    /**
+     * @return the average number of bytes allocated by the calling thread in a single run of the given operation,
+     * after it was warmed up by nanosPerRun().
+     */
+    public static double bytesPerRun(IntSupplier operation, int runs) {
+        long start = allocatedBytes();
+        int sum = 0;
+        for (int i = 0; i < runs; i++) {
+            sum += operation.getAsInt();
+        }
+        sink += sum;
+        return (double) (allocatedBytes() - start) / runs;
+    }
+
+    private static long run(IntSupplier operation, long nanos) {
+        long start = System.nanoTime();
+        long runs = 0;
+        int sum = 0;
+        do {
+            sum += operation.getAsInt();
+            runs++;
+        } while (System.nanoTime() - start < nanos);
+        sink += sum;
+        return runs;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,148 @@
+package webdata;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures the throughput of the Elias gamma and delta codes of BitWriter and BitReader, on values like the ones of
+ * a posting list (review id gaps and term frequencies, interleaved). For comparison, it also measures the codec that
+ * they replaced, which built Strings of "0" and "1" chars (LegacyStringCodec below), on shorter lists since its
+ * decoding time grows quadratically with the length of the list.
+ * Usage: BitCodecBench [numValues]
+ */
+public class BitCodecBench {
+    private static final int[] LEGACY_SIZES = {1000, 4000};
+
+    public static void main(String[] args) {
+        int numValues = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int[] values = BenchData.postingValues(numValues);
+        System.out.printf("%-8s %-6s %-7s %8s %11s %9s %13s%n", "codec", "code", "op", "values", "ns/value", "MB/s",
+                "bytes/value");
+        for (boolean delta : new boolean[]{false, true}) {
+            measureBitCodec(values, delta);
+        }
+        for (int size : LEGACY_SIZES) {
+            measureLegacy(Arrays.copyOf(values, size));
+        }
+    }
+
+    private static void measureBitCodec(int[] values, boolean delta) {
+        BitWriter writer = new BitWriter();
+        IntSupplier encode = () -> {
+            writer.reset();
+            for (int value : values) {
+                if (delta) {
+                    writer.writeDelta(value);
+                } else {
+                    writer.writeGamma(value);
+                }
+            }
+            return (int) writer.bitLength();
+        };
+        encode.getAsInt();
+        byte[] bytes = writer.toByteArray();
+        int[] decoded = new int[values.length];
+        IntSupplier decode = () -> {
+            BitReader reader = new BitReader(bytes);
+            for (int i = 0; i < decoded.length; i++) {
+                decoded[i] = delta ? reader.readDelta() : reader.readGamma();
+            }
+            return decoded[decoded.length - 1];
+        };
+        decode.getAsInt();
+        if (!Arrays.equals(decoded, values)) {
+            throw new IllegalStateException("The values were not decoded correctly");
+        }
+        String code = delta ? "delta" : "gamma";
+        print("BitCodec", code, "encode", values.length, bytes.length, encode);
+        print("BitCodec", code, "decode", values.length, bytes.length, decode);
+    }
+
+    private static void measureLegacy(int[] values) {
+        IntSupplier encode = () -> {
+            StringBuilder bits = new StringBuilder();
+            for (int value : values) {
+                bits.append(LegacyStringCodec.deltaEncode(value));
+            }
+            return LegacyStringCodec.toByteArray(bits.toString()).length;
+        };
+        BitWriter writer = new BitWriter();
+        for (int value : values) {
+            writer.writeDelta(value);
+        }
+        byte[] bytes = writer.toByteArray();  // decoded by the legacy codec as well, since both write the same bits
+        IntSupplier decode = () -> LegacyStringCodec.deltaDecode(bytes, values.length).size();
+        ArrayList<Integer> decoded = LegacyStringCodec.deltaDecode(bytes, values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (decoded.get(i) != values[i]) {
+                throw new IllegalStateException("The values were not decoded correctly by the legacy codec");
+            }
+        }
+        print("String", "delta", "encode", values.length, bytes.length, encode);
+        print("String", "delta", "decode", values.length, bytes.length, decode);
+    }
+
+    private static void print(String codec, String code, String op, int numValues, int numBytes,
+                              IntSupplier operation) {
+        double nanos = BenchTimer.nanosPerRun(operation);
+        double bytes = BenchTimer.bytesPerRun(operation, 3);
+        System.out.printf("%-8s %-6s %-7s %8d %11.2f %9.1f %13.1f%n", codec, code, op, numValues, nanos / numValues,
+                numBytes / (nanos / 1e9) / 1e6, bytes / numValues);
+    }
+
+    /**
+     * The Elias delta codec of Encoding before BitWriter and BitReader, which represented the bits as Strings. Its
+     * decoding stops after count numbers, since the padding of the last byte would be decoded as well.
+     */
+    private static class LegacyStringCodec {
+        private static String gammaEncode(int num) {
+            String offset = Integer.toBinaryString(num + 1);
+            return "1".repeat(offset.length() - 1) + "0" + offset.substring(1);
+        }
+
+        private static String deltaEncode(int num) {
+            String offset = Integer.toBinaryString(num + 1);
+            return gammaEncode(offset.length() - 1) + offset.substring(1);
+        }
+
+        private static ArrayList<Integer> deltaDecode(byte[] code, int count) {
+            String encoding = byteToString(code);
+            ArrayList<Integer> output = new ArrayList<>();
+            int bitsRead = 0;
+            while (output.size() < count) {
+                int length = encoding.substring(bitsRead).indexOf('0'); // Find the first 0
+                int offsetLoc = bitsRead + length + 1;
+                int actualLength = Integer.parseInt("1" + encoding.substring(offsetLoc, offsetLoc + length), 2);
+                bitsRead = offsetLoc + length;
+
+                output.add(Integer.parseInt("1" + encoding.substring(bitsRead, bitsRead + actualLength - 1), 2) - 1);
+                bitsRead += actualLength - 1;
+            }
+            return output;
+        }
+
+        private static byte[] toByteArray(String encoding) {
+            // Pad 0s to the nearest multiple of 8
+            String padded = encoding
+                    + "0".repeat((int) Math.ceil((float) encoding.length() / 8) * 8 - encoding.length());
+            byte[] ret = new BigInteger(padded, 2).toByteArray();
+            if (ret.length * 8 == padded.length() + 8) {
+                return Arrays.copyOfRange(ret, 1, ret.length);
+            } else {
+                return ret;
+            }
+        }
+
+        private static String byteToString(byte[] encoding) {
+            StringBuilder s = new StringBuilder();
+            for (byte b : encoding) {
+                String binary = Integer.toBinaryString(Byte.toUnsignedInt(b));
+                s.append("0".repeat(8 - binary.length())); // toBinaryString removes leading 0's
+                s.append(binary);
+            }
+            return s.toString();
+        }
+    }
+}
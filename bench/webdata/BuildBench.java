@@ -0,0 +1,144 @@
+package webdata;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures how the index build scales with the number of threads (see setNumThreads() of both writers).
+ * For every number of threads, the wall time of a build is printed with the CPU time of the calling thread, which
+ * is the serial part of the build (reading the input, merging and writing the index), and the CPU time of the worker
+ * threads, which is the part that runs in parallel. The expected time on a machine with a core for every thread is
+ * serial + workers / threads, which is also printed, so the scaling can be estimated on a machine with fewer cores.
+ * The CPU times of the garbage collector and the JIT compiler are not included.
+ * Usage: BuildBench [numReviews] [maxThreads]
+ */
+public class BuildBench {
+    private static final int REPEATS = 3;  // the best of REPEATS builds is reported, after a warm-up build
+
+    public static void main(String[] args) throws Exception {
+        int numReviews = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        File input = File.createTempFile("reviews", ".txt");
+        input.deleteOnExit();
+        BenchData.writeReviews(input, numReviews);
+        System.out.printf("%d reviews (%d MB), %d cores%n", numReviews, input.length() >> 20,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-16s %7s %9s %10s %11s %12s %9s%n", "writer", "threads", "wall ms", "serial ms",
+                "workers ms", "expected ms", "speedup");
+        for (String writer : new String[]{"SlowIndexWriter", "IndexWriter"}) {
+            double singleThread = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                Result best = null;
+                for (int i = 0; i <= REPEATS; i++) {
+                    Result result = build(writer, threads, input.getPath());
+                    if (i > 0 && (best == null || result.expectedMillis() < best.expectedMillis())) {
+                        best = result;
+                    }
+                }
+                if (threads == 1) {
+                    singleThread = best.expectedMillis();
+                }
+                System.out.printf("%-16s %7d %9.0f %10.0f %11.0f %12.0f %8.2fx%n", writer, threads, best.wallMillis,
+                        best.serialMillis, best.workerMillis, best.expectedMillis(),
+                        singleThread / best.expectedMillis());
+            }
+        }
+    }
+
+    private static Result build(String writer, int threads, String input) throws Exception {
+        File dir = File.createTempFile("index", "");
+        dir.delete();
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        WorkerSampler sampler = new WorkerSampler(bean);
+        sampler.start();
+        long startCpu = bean.getCurrentThreadCpuTime();
+        long start = System.nanoTime();
+        if (writer.equals("SlowIndexWriter")) {
+            SlowIndexWriter slowWriter = new SlowIndexWriter();
+            slowWriter.setNumThreads(threads);
+            slowWriter.slowWrite(input, dir.getPath());
+            slowWriter.removeIndex(dir.getPath());
+        } else {
+            IndexWriter indexWriter = new IndexWriter();
+            indexWriter.setNumThreads(threads);
+            indexWriter.write(input, dir.getPath());
+            indexWriter.removeIndex(dir.getPath());
+        }
+        Result result = new Result(threads);
+        result.wallMillis = (System.nanoTime() - start) / 1e6;
+        result.serialMillis = (bean.getCurrentThreadCpuTime() - startCpu) / 1e6;
+        result.workerMillis = sampler.stopAndGetCpuNanos() / 1e6;
+        return result;
+    }
+
+    private static class Result {
+        private final int threads;
+        private double wallMillis;
+        private double serialMillis;
+        private double workerMillis;
+
+        private Result(int threads) {
+            this.threads = threads;
+        }
+
+        /**
+         * @return the expected wall time with a core for every thread.
+         */
+        private double expectedMillis() {
+            return serialMillis + workerMillis / threads;
+        }
+    }
+
+    /**
+     * Samples the CPU time of the worker threads of the writers (the threads of their executors) every few
+     * milliseconds, since the time of a thread cannot be read once it ends.
+     */
+    private static class WorkerSampler extends Thread {
+        private final ThreadMXBean bean;
+        private final Map<Long, Long> cpuNanos = new HashMap<>();
+        private volatile boolean running = true;
+
+        private WorkerSampler(ThreadMXBean bean) {
+            this.bean = bean;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                sample();
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private synchronized void sample() {
+            for (ThreadInfo info : bean.getThreadInfo(bean.getAllThreadIds())) {
+                if (info != null && info.getThreadName().startsWith("pool-")) {
+                    long cpu = bean.getThreadCpuTime(info.getThreadId());
+                    if (cpu > 0) {
+                        cpuNanos.merge(info.getThreadId(), cpu, Math::max);
+                    }
+                }
+            }
+        }
+
+        private long stopAndGetCpuNanos() throws InterruptedException {
+            running = false;
+            join();
+            sample();
+            long total = 0;
+            for (long cpu : cpuNanos.values()) {
+                total += cpu;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package webdata;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Compares the postings codecs (see PostingsCodec) on the posting lists of a review corpus: the given reviews file (in
+ * the format of the input files), or else numReviews synthetic reviews of BenchData. For every codec, the index is
+ * built with SlowIndexWriter.setPostingsCodec(), and then the size of the inverted index per posting, the time per
+ * posting to iterate all lists with nextDoc() and freq(), and the time per call of advance() are printed.
+ * The advance() targets are every ADVANCE_STRIDE-th review of the lists with at least MIN_ADVANCE_POSTINGS postings,
+ * so most calls skip whole blocks. The lists are read the way IndexReader reads them, from the mapped file.
+ * Usage: CodecBench [reviewsFile | numReviews]
+ */
+public class CodecBench {
+    private static final String[] NAMES = {"Elias delta", "VByte", "Simple-8b", "PForDelta", "Group varint"};
+    private static final int ADVANCE_STRIDE = 32;
+    private static final int MIN_ADVANCE_POSTINGS = 1024;
+
+    public static void main(String[] args) throws Exception {
+        File input;
+        if (args.length > 0 && new File(args[0]).isFile()) {
+            input = new File(args[0]);
+            System.out.printf("%s (%d MB)%n", input.getPath(), input.length() >> 20);
+        } else {
+            int numReviews = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+            input = File.createTempFile("reviews", ".txt");
+            input.deleteOnExit();
+            BenchData.writeReviews(input, numReviews);
+            System.out.printf("%d synthetic reviews%n", numReviews);
+        }
+        System.out.printf("%-13s %11s %13s %13s %13s %12s%n", "codec", "index KB", "bits/posting", "nextDoc ns",
+                "bytes/posting", "advance ns");
+        long expectedChecksum = 0;
+        for (int id = PostingsCodec.ELIAS_DELTA; id <= PostingsCodec.GROUP_VARINT; id++) {
+            File dir = File.createTempFile("index", "");
+            dir.delete();
+            SlowIndexWriter writer = new SlowIndexWriter();
+            writer.setPostingsCodec(id);
+            writer.slowWrite(input.getPath(), dir.getPath());
+            TokensIndex tokens = TokensIndex.load(dir + "/token_index.txt");
+            long checksum;
+            try (MappedFile invertedIndex = new MappedFile(dir + "/token_inverted_index.txt")) {
+                Lists lists = new Lists(tokens, invertedIndex);
+                checksum = lists.iterateAll();
+                if (id == PostingsCodec.ELIAS_DELTA) {
+                    expectedChecksum = checksum;
+                } else if (checksum != expectedChecksum) {
+                    throw new IllegalStateException(NAMES[id] + " did not decode the same postings");
+                }
+                IntSupplier iterate = () -> (int) lists.iterateAll();
+                IntSupplier advance = () -> (int) lists.advanceAll();
+                double nextDocNanos = BenchTimer.nanosPerRun(iterate) / lists.numPostings;
+                double bytesPerPosting = BenchTimer.bytesPerRun(iterate, 3) / lists.numPostings;
+                double advanceNanos = BenchTimer.nanosPerRun(advance) / lists.numTargets;
+                System.out.printf("%-13s %11d %13.2f %13.2f %13.2f %12.2f%n", NAMES[id], invertedIndex.length() >> 10,
+                        8.0 * invertedIndex.length() / lists.numPostings, nextDocNanos, bytesPerPosting,
+                        advanceNanos);
+            }
+            writer.removeIndex(dir.getPath());
+        }
+    }
+
+    /**
+     * The posting lists of an index, and the advance() targets of its long lists.
+     */
+    private static class Lists {
+        private final PostingsCodec codec;
+        private final ByteBuffer[] lists;
+        private final int[] counts;
+        private final List<Integer> longLists = new ArrayList<>();
+        private final List<int[]> targets = new ArrayList<>();
+        private long numPostings;
+        private long numTargets;
+
+        private Lists(TokensIndex tokens, MappedFile invertedIndex) {
+            codec = tokens.getCodec();
+            lists = new ByteBuffer[tokens.size()];
+            counts = new int[tokens.size()];
+            for (int i = 0; i < tokens.size(); i++) {
+                long start = tokens.getInvertedIdxPtr(i);
+                long end = i + 1 < tokens.size() ? tokens.getInvertedIdxPtr(i + 1) : invertedIndex.length();
+                lists[i] = invertedIndex.slice(start, Math.toIntExact(end - start));
+                counts[i] = tokens.getFrequency(i);
+                numPostings += counts[i];
+                if (counts[i] >= MIN_ADVANCE_POSTINGS) {
+                    addTargets(i);
+                }
+            }
+        }
+
+        private void addTargets(int list) {
+            int[] listTargets = new int[counts[list] / ADVANCE_STRIDE];
+            PostingsIterator postings = codec.iterator(lists[list].duplicate(), counts[list]);
+            for (int i = 0; i < listTargets.length * ADVANCE_STRIDE; i++) {
+                int docId = postings.nextDoc();
+                if (i % ADVANCE_STRIDE == ADVANCE_STRIDE - 1) {
+                    listTargets[i / ADVANCE_STRIDE] = docId;
+                }
+            }
+            longLists.add(list);
+            targets.add(listTargets);
+            numTargets += listTargets.length;
+        }
+
+        /**
+         * Iterate all postings of all lists.
+         * @return a checksum of the review ids and the frequencies.
+         */
+        private long iterateAll() {
+            long checksum = 0;
+            for (int i = 0; i < lists.length; i++) {
+                PostingsIterator postings = codec.iterator(lists[i].duplicate(), counts[i]);
+                for (int docId = postings.nextDoc(); docId != PostingsIterator.NO_MORE_DOCS;
+                     docId = postings.nextDoc()) {
+                    checksum = 31 * checksum + docId + postings.freq();
+                }
+            }
+            return checksum;
+        }
+
+        private long advanceAll() {
+            long sum = 0;
+            for (int i = 0; i < longLists.size(); i++) {
+                int list = longLists.get(i);
+                PostingsIterator postings = codec.iterator(lists[list].duplicate(), counts[list]);
+                for (int target : targets.get(i)) {
+                    sum += postings.advance(target);
+                }
+            }
+            return sum;
+        }
+    }
+}
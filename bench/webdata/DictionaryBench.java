@@ -0,0 +1,144 @@
+package webdata;
+
+import java.io.File;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures the lookup of a word in the front-coded dictionaries of the token index and the product index (search()),
+ * for words that are in the dictionary and for words that are not. For comparison, it also measures the search that
+ * the current one replaced (legacySearch() below), which decoded the word at every probe of the binary search and
+ * every word of the block into a new String, running on top of getWordAt().
+ * Usage: DictionaryBench [numReviews]
+ */
+public class DictionaryBench {
+    private static final int K = 8;  // the block size of the front coding, as written by the index writers
+    private static final int NUM_QUERIES = 4096;
+
+    public static void main(String[] args) throws Exception {
+        int numReviews = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        File input = File.createTempFile("reviews", ".txt");
+        input.deleteOnExit();
+        BenchData.writeReviews(input, numReviews);
+        File dir = File.createTempFile("index", "");
+        dir.delete();
+        SlowIndexWriter writer = new SlowIndexWriter();
+        writer.setTermHash(true);
+        writer.slowWrite(input.getPath(), dir.getPath());
+        TokensIndex tokens = TokensIndex.load(dir + "/token_index.txt");
+        ProductIndex products = ProductIndex.load(dir + "/product_index.txt");
+        writer.removeIndex(dir.getPath());
+        int numProducts = products.size();
+
+        System.out.printf("%d tokens, %d products%n", tokens.size(), numProducts);
+        System.out.printf("%-8s %-7s %-13s %12s %14s%n", "index", "queries", "search", "ns/lookup", "bytes/lookup");
+        String[] tokenHits = queries(tokens::getWordAt, tokens.size(), false);
+        String[] tokenMisses = queries(tokens::getWordAt, tokens.size(), true);
+        String[] productHits = queries(products::getWordAt, numProducts, false);
+        String[] productMisses = queries(products::getWordAt, numProducts, true);
+        for (boolean misses : new boolean[]{false, true}) {
+            String[] tokenQueries = misses ? tokenMisses : tokenHits;
+            String[] productQueries = misses ? productMisses : productHits;
+            String kind = misses ? "misses" : "hits";
+            checkSame(tokenQueries, tokens::search, query -> legacySearch(query, tokens::getWordAt, tokens.size()));
+            checkSame(productQueries, products::search,
+                    query -> legacySearch(query, products::getWordAt, numProducts));
+            measure("tokens", kind, "search+hash", tokenQueries, tokens::search);
+            measure("tokens", kind, "legacy", tokenQueries,
+                    query -> legacySearch(query, tokens::getWordAt, tokens.size()));
+            measure("products", kind, "search", productQueries, products::search);
+            measure("products", kind, "legacy", productQueries,
+                    query -> legacySearch(query, products::getWordAt, numProducts));
+        }
+        TokensIndex tokensWithoutHash = withoutTermHash(input);
+        measure("tokens", "hits", "search", tokenHits, tokensWithoutHash::search);
+        measure("tokens", "misses", "search", tokenMisses, tokensWithoutHash::search);
+    }
+
+    /**
+     * @return NUM_QUERIES random words of the dictionary, or words that are not in it if misses is true (a word of
+     * the dictionary with a char appended, which falls inside the same block).
+     */
+    private static String[] queries(IntFunction<String> wordAt, int size, boolean misses) {
+        Random random = new Random(BenchData.SEED);
+        String[] queries = new String[NUM_QUERIES];
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            String word = wordAt.apply(random.nextInt(size));
+            queries[i] = misses ? word + "~" : word;
+        }
+        return queries;
+    }
+
+    private static TokensIndex withoutTermHash(File input) throws Exception {
+        File dir = File.createTempFile("index", "");
+        dir.delete();
+        SlowIndexWriter writer = new SlowIndexWriter();
+        writer.slowWrite(input.getPath(), dir.getPath());
+        TokensIndex tokens = TokensIndex.load(dir + "/token_index.txt");
+        writer.removeIndex(dir.getPath());
+        return tokens;
+    }
+
+    private static void checkSame(String[] queries, Search search, Search legacy) {
+        for (String query : queries) {
+            if (search.search(query) != legacy.search(query)) {
+                throw new IllegalStateException("Different results for " + query);
+            }
+        }
+    }
+
+    private static void measure(String index, String kind, String name, String[] queries, Search search) {
+        IntSupplier operation = () -> {
+            int sum = 0;
+            for (String query : queries) {
+                sum += search.search(query);
+            }
+            return sum;
+        };
+        double nanos = BenchTimer.nanosPerRun(operation);
+        double bytes = BenchTimer.bytesPerRun(operation, 10);
+        System.out.printf("%-8s %-7s %-13s %12.1f %14.1f%n", index, kind, name, nanos / queries.length,
+                bytes / queries.length);
+    }
+
+    private interface Search {
+        int search(String query);
+    }
+
+    /**
+     * The search of TokensIndex and ProductIndex before they compared the query to the front-coded bytes: a binary
+     * search over the first words of the blocks, and a scan of the block, decoding every word with getWordAt().
+     * Its high bound was size / K, which missed the words of the last block when size is a multiple of K, so here it
+     * is the last block, to compare the results of both searches.
+     */
+    private static int legacySearch(String str, IntFunction<String> wordAt, int size) {
+        int high = (size - 1) / K;
+        int low = 0;
+        int curBlock = high / 2;
+        while (low < high) {
+            int cmp = str.compareTo(wordAt.apply(K * curBlock));
+            if (cmp < 0) {
+                high = curBlock - 1;  // str is in a previous block
+            } else if (cmp > 0) {
+                // Checks the first word of the next block (if it exists)
+                if (K * (curBlock + 1) < size && str.compareTo(wordAt.apply(K * (curBlock + 1))) < 0) {
+                    break;  // str is in inside this block
+                }
+                low = curBlock + 1;  // str is in a higher block
+            } else {
+                return K * curBlock;  // str is the first word in this block
+            }
+            curBlock = (high + low) / 2;
+        }
+
+        // Search the block for str
+        int blockStart = K * curBlock;
+        for (int offset = 0; offset < K && blockStart + offset < size; offset++) {
+            if (wordAt.apply(blockStart + offset).equals(str)) {
+                return blockStart + offset;
+            }
+        }
+        return -1;
+    }
+}
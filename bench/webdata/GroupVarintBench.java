@@ -0,0 +1,138 @@
+package webdata;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures the throughput of the Group Varint encoding of Encoding (groupVarintEncode() and groupVarintDecode() over
+ * arrays), on the values of a posting list and on values of 1 to 4 bytes in random order, which the selector table
+ * decodes as fast as values of the same length. For comparison, it also measures the Group Varint codec that it
+ * replaced, which encoded and decoded a single group into new arrays (LegacyGroupVarint below).
+ * Usage: GroupVarintBench [numValues]
+ */
+public class GroupVarintBench {
+    public static void main(String[] args) {
+        int numValues = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        System.out.printf("%-7s %-7s %-7s %8s %11s %9s %13s %12s%n", "codec", "values", "op", "count", "ns/value",
+                "MB/s", "bytes/value", "size/value");
+        for (boolean mixed : new boolean[]{false, true}) {
+            int[] values = mixed ? mixedValues(numValues) : BenchData.postingValues(numValues);
+            String kind = mixed ? "mixed" : "gaps";
+            measureTable(values, kind);
+            measureLegacy(values, kind);
+        }
+    }
+
+    /**
+     * @return numValues values, where the number of bytes of every value is chosen at random between 1 and 4.
+     */
+    private static int[] mixedValues(int numValues) {
+        Random random = new Random(BenchData.SEED);
+        int[] values = new int[numValues];
+        for (int i = 0; i < numValues; i++) {
+            int numBits = 8 * (1 + random.nextInt(4));
+            values[i] = numBits == 32 ? random.nextInt() : random.nextInt(1 << numBits);
+        }
+        return values;
+    }
+
+    private static void measureTable(int[] values, String kind) {
+        byte[] bytes = new byte[Encoding.groupVarintMaxLength(values.length)];
+        int length = Encoding.groupVarintEncode(values, 0, values.length, bytes, 0);
+        IntSupplier encode = () -> Encoding.groupVarintEncode(values, 0, values.length, bytes, 0);
+        int[] decoded = new int[values.length];
+        IntSupplier decode = () -> Encoding.groupVarintDecode(bytes, 0, decoded, 0, decoded.length);
+        decode.getAsInt();
+        if (!Arrays.equals(decoded, values)) {
+            throw new IllegalStateException("The values were not decoded correctly");
+        }
+        print("table", kind, "encode", values.length, length, encode);
+        print("table", kind, "decode", values.length, length, decode);
+    }
+
+    private static void measureLegacy(int[] values, String kind) {
+        IntSupplier encode = () -> LegacyGroupVarint.encode(values).length;
+        byte[] bytes = LegacyGroupVarint.encode(values);
+        IntSupplier decode = () -> LegacyGroupVarint.decode(bytes, values.length).length;
+        if (!Arrays.equals(LegacyGroupVarint.decode(bytes, values.length), values)) {
+            throw new IllegalStateException("The values were not decoded correctly by the legacy codec");
+        }
+        print("legacy", kind, "encode", values.length, bytes.length, encode);
+        print("legacy", kind, "decode", values.length, bytes.length, decode);
+    }
+
+    private static void print(String codec, String kind, String op, int numValues, int numBytes,
+                              IntSupplier operation) {
+        double nanos = BenchTimer.nanosPerRun(operation);
+        double bytes = BenchTimer.bytesPerRun(operation, 3);
+        System.out.printf("%-7s %-7s %-7s %8d %11.2f %9.1f %13.1f %12.2f%n", codec, kind, op, numValues,
+                nanos / numValues, numBytes / (nanos / 1e9) / 1e6, bytes / numValues, (double) numBytes / numValues);
+    }
+
+    /**
+     * The Group Varint codec of Encoding before the table-driven one, which encoded a single group of 4 numbers with
+     * a ByteArrayOutputStream and a ByteBuffer per number, and decoded every number with a BigInteger. Its two bugs
+     * are fixed here, so it can decode its own output: the length of a number was read with the wrong precedence,
+     * and zero bytes inside a number were dropped. The arrays are encoded and decoded a group at a time, the way the
+     * callers of the single group methods did.
+     */
+    private static class LegacyGroupVarint {
+        private static byte[] encode(int[] nums) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int group = 0; group < nums.length; group += 4) {
+                out.writeBytes(encodeGroup(Arrays.copyOfRange(nums, group, group + 4)));
+            }
+            return out.toByteArray();
+        }
+
+        private static int[] decode(byte[] encoding, int count) {
+            int[] output = new int[(count + 3) / 4 * 4];
+            int pos = 0;
+            for (int group = 0; group < count; group += 4) {
+                int groupLength = 1;
+                for (int i = 0; i < 4; i++) {
+                    groupLength += 1 + ((encoding[pos] >> (2 * (3 - i))) & 3);
+                }
+                int[] nums = decodeGroup(Arrays.copyOfRange(encoding, pos, pos + groupLength));
+                System.arraycopy(nums, 0, output, group, 4);
+                pos += groupLength;
+            }
+            return Arrays.copyOf(output, count);
+        }
+
+        private static byte[] encodeGroup(int[] nums) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(0);
+            byte length = 0;
+            for (int i = 0; i < nums.length; i++) {
+                byte[] numAsBytes = ByteBuffer.allocate(4).putInt(nums[i]).array();
+                int firstByte = Math.min(3, Integer.numberOfLeadingZeros(nums[i]) / 8);
+                out.write(numAsBytes, firstByte, 4 - firstByte);
+                length = (byte) (length | (byte) ((3 - firstByte) << 2 * (3 - i)));
+            }
+            byte[] output = out.toByteArray();
+            output[0] = length;
+            return output;
+        }
+
+        private static int[] decodeGroup(byte[] encoding) {
+            byte lengths = encoding[0];
+            int[] output = new int[4];
+            int bytesRead = 1;
+            for (int i = 0; i < 4; i++) {
+                int bytesToRead = 1 + ((lengths >> (2 * (3 - i))) & 3);
+                byte[] o = new byte[bytesToRead];
+                for (int b = 0; b < bytesToRead; b++) {
+                    o[b] = encoding[bytesRead + b];
+                }
+                bytesRead += bytesToRead;
+                output[i] = new BigInteger(1, o).intValue();
+            }
+            return output;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package webdata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Base class of the index writers, with the options of the build and the parts of the index that do not depend on how
+ * the tokens are collected: the products and the fields of the reviews are kept in memory as the reviews are read,
+ * and the product index and review index are created from them. The subclasses create the token index.
+ */
+public abstract class BaseIndexWriter {
+	protected static final String PRODUCT_INDEX_FILE = "product_index.txt";
+	protected static final String REVIEW_INDEX_FILE = "review_index.txt";
+	protected static final String TOKEN_INDEX_FILE = "token_index.txt";
+	protected static final String TOKEN_INVERTED_INDEX_FILE = "token_inverted_index.txt";
+	protected static final int K = 8;  // the block size of the front coding of the dictionaries
+
+	protected String dir;
+	protected int numThreads = 1;
+	protected BuildMetrics metrics;  // the metrics of the current (or last) build
+	private int skipInterval = TokensIndex.DEFAULT_SKIP_INTERVAL;
+	private int postingsCodec = PostingsCodec.ELIAS_DELTA;
+	private boolean termHash = false;
+	private final List<BuildListener> buildListeners = new ArrayList<>();
+
+	// Products dictionary: every product gets a number by the order of its first appearance.
+	private TermDictionary productIds;
+	private IntList productFirstReview;
+	private IntList productSpan;
+
+	// Review information, the i-th entry of every list belongs to review i + 1.
+	private IntList reviewProducts;
+	private IntList helpfNumerators;
+	private IntList helpfDenominators;
+	private IntList reviewLengths;
+	private IntList reviewScores;
+
+	/**
+	 * Set the number of postings between two skip entries in the inverted index (128 is a good choice for indices
+	 * that serve conjunctive queries), or 0 to write it without skips, which is the default. Only used by the
+	 * ELIAS_DELTA codec; the block codecs always have a skip entry per block.
+	 */
+	public void setSkipInterval(int skipInterval) {
+		this.skipInterval = skipInterval;
+	}
+
+	/**
+	 * Set the codec of the posting lists in the inverted index, one of the ids in PostingsCodec. The default,
+	 * ELIAS_DELTA, gives the smallest index; the block codecs take more space but are decoded faster.
+	 */
+	public void setPostingsCodec(int postingsCodec) {
+		this.postingsCodec = postingsCodec;
+	}
+
+	/**
+	 * Set whether the token index should include a perfect hash of the tokens (see TermHash), which lets the reader
+	 * find a token without a binary search, at the cost of about 10 bytes per token.
+	 */
+	public void setTermHash(boolean termHash) {
+		this.termHash = termHash;
+	}
+
+	/**
+	 * Set the number of threads that parse and tokenize the reviews. With more than one thread, the calling thread
+	 * reads the reviews and passes consecutive reviews to the worker threads in turn (see the writers for how their
+	 * tokens are collected). The index is the same for any number of threads.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Add a listener that receives the phase timings and the counters of the next builds (see BuildMetrics).
+	 */
+	public void addBuildListener(BuildListener listener) {
+		buildListeners.add(listener);
+	}
+
+	/**
+	 * @return the metrics of the last build, or null if no index was written yet.
+	 */
+	public BuildMetrics getBuildMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Delete all index files by removing the given directory
+	 */
+	public void removeIndex(String dir) {
+		File dirToRemove = new File(dir);
+		File[] contents = dirToRemove.listFiles();
+		if (contents != null) {
+			for (File file : contents) {
+				file.delete();
+			}
+		}
+		dirToRemove.delete();
+	}
+
+	/**
+	 * Start a new build of an index in the given directory: create the directory, the metrics of the build, and empty
+	 * dictionaries of the products and the reviews.
+	 */
+	protected void startBuild(String dir) {
+		this.dir = dir;
+		metrics = new BuildMetrics(buildListeners);
+		createDir();
+		productIds = new TermDictionary();
+		productFirstReview = new IntList();
+		productSpan = new IntList();
+		reviewProducts = new IntList();
+		helpfNumerators = new IntList();
+		helpfDenominators = new IntList();
+		reviewLengths = new IntList();
+		reviewScores = new IntList();
+	}
+
+	/**
+	 * Create a new directory in the path specified in the instance initialization.
+	 */
+	private void createDir(){
+		Path path = Path.of(this.dir);
+		try {
+			Files.createDirectories(path);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Add the product and the fields of the next review. Reviews must be added by their order in the input file.
+	 * @param review the fields of the review, as parsed by the DataParser. The text is not used.
+	 * @param reviewIndex the number of the review, starting from 1.
+	 * @param length the number of tokens in the text of the review.
+	 */
+	protected void addReview(HashMap<String, String> review, int reviewIndex, int length) {
+		int productNum = addProductId(review.get("productId"), reviewIndex);
+		addReviewInfo(review, productNum);
+		reviewLengths.add(length);
+		if (reviewIndex % BuildMetrics.PROGRESS_INTERVAL == 0) {
+			metrics.setCounter(BuildMetrics.REVIEWS, reviewIndex);
+		}
+	}
+
+	/**
+	 * Update the products dictionary with the given product. If the product already exists, it adds the review id to
+	 * the range of reviews matching this product.
+	 * @return the number of the product, by order of first appearance.
+	 */
+	private int addProductId(String productId, int reviewId) {
+		int productNum = productIds.add(productId);
+		if (productNum == productFirstReview.size()) {  // product seen for the first time
+			productFirstReview.add(reviewId);
+			productSpan.add(0);
+		} else {
+			productSpan.setInt(productNum, productSpan.getInt(productNum) + 1);
+		}
+		return productNum;
+	}
+
+	/**
+	 * Save the fields of the next review in the review lists, except for its length.
+	 */
+	private void addReviewInfo(HashMap<String, String> review, int productNum) {
+		String[] helpf = review.get("helpfulness").split("/");
+		reviewProducts.add(productNum);
+		helpfNumerators.add(Integer.parseInt(helpf[0]));
+		helpfDenominators.add(Integer.parseInt(helpf[1]));
+		reviewScores.add((int) Float.parseFloat(review.get("score")));
+	}
+
+	/**
+	 * Record the number of reviews and products, once all reviews were added.
+	 */
+	protected void countReviews() {
+		metrics.setCounter(BuildMetrics.REVIEWS, reviewProducts.size());
+		metrics.setCounter(BuildMetrics.PRODUCTS, productIds.size());
+	}
+
+	/**
+	 * Create the product index and the review index and save them to the disk. The product index is saved once the
+	 * quality of the products is computed from the review index.
+	 */
+	protected void writeProductAndReviewIndices() {
+		metrics.startPhase("createProductIndex");
+		int[] productRanks = new int[productIds.size()];
+		ProductIndex pIndex = createProductIndex(productRanks);
+		metrics.startPhase("createReviewIndex");
+		ReviewIndex rIndex = createReviewIndex(productRanks);
+		metrics.startPhase("saveProductIndex");
+		pIndex.computeQuality(rIndex);
+		saveToDir(PRODUCT_INDEX_FILE, pIndex);
+	}
+
+	/**
+	 * Creates the product index, i.e. all the information that is related to products.
+	 * @param productRanks filled with the position in the index of every product number (by order of first appearance).
+	 */
+	private ProductIndex createProductIndex(int[] productRanks) {
+		Integer[] order = productIds.sortedIds();
+		List<String> ids = new ArrayList<>(order.length);
+		for (int rank = 0; rank < order.length; rank++) {
+			productRanks[order[rank]] = rank;
+			ids.add(productIds.get(order[rank]));
+		}
+		productIds = null;
+		KFront kf = new KFront();
+		kf.createKFront(K, ids);
+		int rank = 0;
+		for (List<Integer> entry : kf.getTable()) {
+			entry.add(productFirstReview.getInt(order[rank]));
+			entry.add(productSpan.getInt(order[rank]));
+			rank++;
+		}
+
+		ProductIndex pIndex = new ProductIndex(K);
+		pIndex.insertData(kf.getTable(), kf.getConcatBytes());
+		return pIndex;
+	}
+
+	/**
+	 * Creates and saves to the disk the review index which hold all information related to reviews.
+	 * @param productRanks the position in the product index of every product number.
+	 */
+	private ReviewIndex createReviewIndex(int[] productRanks) {
+		ReviewIndex rIndex = new ReviewIndex();
+		for (int i = 0; i < reviewProducts.size(); i++) {
+			rIndex.addReview(productRanks[reviewProducts.getInt(i)], helpfNumerators.getInt(i),
+					helpfDenominators.getInt(i), reviewLengths.getInt(i), reviewScores.getInt(i));
+		}
+		saveToDir(REVIEW_INDEX_FILE, rIndex);
+		return rIndex;
+	}
+
+	/**
+	 * @return an empty token index in the directory of the build, with the postings codec and skip interval that
+	 * were set.
+	 */
+	protected TokensIndex createTokensIndex() {
+		return new TokensIndex(K, this.dir, PostingsCodec.forId(postingsCodec, skipInterval), skipInterval);
+	}
+
+	/**
+	 * Record the counters of the given token index, whose inverted index was written, add the term hash if it was
+	 * requested, and save the token index to the disk.
+	 */
+	protected void saveTokenIndex(TokensIndex tIdx) {
+		metrics.setCounter(BuildMetrics.TOKENS, tIdx.getNumTokens());
+		metrics.setCounter(BuildMetrics.UNIQUE_TERMS, tIdx.size());
+		metrics.setCounter(BuildMetrics.SKIP_BYTES, tIdx.getSkipBytes());
+		if (termHash) {
+			tIdx.buildTermHash();
+		}
+		saveToDir(TOKEN_INDEX_FILE, tIdx);
+	}
+
+	/**
+	 * Record the sizes of the index files, write the build summary next to the index and notify the listeners.
+	 */
+	protected void finishMetrics() {
+		metrics.setCounter(BuildMetrics.POSTINGS_BYTES, new File(this.dir, TOKEN_INVERTED_INDEX_FILE).length());
+		metrics.setFileSizes(this.dir);
+		try {
+			metrics.finish(this.dir);
+		} catch (IOException e) {
+			System.out.println("Error occurred while saving the build summary: " + BuildMetrics.SUMMARY_FILE);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Save the given index to disk under the given name, as an index file (see IndexFile). The file is saved to the dir
+	 * of the current build.
+	 */
+	protected void saveToDir(String name, IndexFile.Content index) {
+		try {
+			IndexFile.save(this.dir + "/" + name, index);
+		} catch (IOException e) {
+			System.out.println("Error occurred while saving the index file: " + name);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Wait for the given task of a worker thread to complete.
+	 */
+	protected static void await(Future<?> result) {
+		try {
+			result.get();
+		} catch (InterruptedException | ExecutionException e) {
+			System.out.println("Error occurred while tokenizing the reviews.");
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
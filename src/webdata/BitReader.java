@@ -0,0 +1,105 @@
+package webdata;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a sequence of bits (most significant bit first) directly from a byte array or a ByteBuffer. Up to 64 bits are
+ * kept in a long buffer, and runs of 1s are counted with Long.numberOfLeadingZeros instead of bit by bit.
+ */
+public class BitReader {
+    private final ByteBuffer source;
+    private final int start;
+    private int nextByte;  // absolute position in source of the next byte to load into the buffer
+    private final int end;
+    private long buffer;  // the low availableBits bits of the buffer are the next bits to read
+    private int availableBits;
+
+    public BitReader(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Create a reader of the bytes between the position and the limit of the given buffer. The buffer itself is not
+     * modified.
+     */
+    public BitReader(ByteBuffer source) {
+        this.source = source;
+        this.start = source.position();
+        this.nextByte = start;
+        this.end = source.limit();
+        this.buffer = 0;
+        this.availableBits = 0;
+    }
+
+    /**
+     * Move the reader to the given bit offset, counted from the first bit of the data.
+     */
+    public void seek(long bitOffset) {
+        nextByte = start + (int) (bitOffset >>> 3);
+        buffer = 0;
+        availableBits = 0;
+        readBits((int) (bitOffset & 7));
+    }
+
+    /**
+     * Read the next numBits bits (0 <= numBits <= 32) as an unsigned number.
+     */
+    public long readBits(int numBits) {
+        if (availableBits < numBits) {
+            refill();
+            if (availableBits < numBits) {
+                throw new IllegalStateException("Read past the end of the encoded data");
+            }
+        }
+        availableBits -= numBits;
+        return (buffer >>> availableBits) & ((1L << numBits) - 1);
+    }
+
+    /**
+     * Read a gamma encoded number.
+     */
+    public int readGamma() {
+        int length = readUnary();
+        return (int) (((1L << length) | readBits(length)) - 1);
+    }
+
+    /**
+     * Read a delta encoded number.
+     */
+    public int readDelta() {
+        int length = readGamma();
+        return (int) (((1L << length) | readBits(length)) - 1);
+    }
+
+    /**
+     * Count the 1s until the next 0, and skip over the 0 as well.
+     */
+    private int readUnary() {
+        int ones = 0;
+        while (true) {
+            if (availableBits == 0) {
+                refill();
+                if (availableBits == 0) {
+                    throw new IllegalStateException("Read past the end of the encoded data");
+                }
+            }
+            int run = Long.numberOfLeadingZeros(~(buffer << (64 - availableBits)));
+            if (run < availableBits) {
+                availableBits -= run + 1;
+                return ones + run;
+            }
+            ones += availableBits;
+            availableBits = 0;
+        }
+    }
+
+    /**
+     * Load whole bytes from the source until the buffer is full or the source ends.
+     */
+    private void refill() {
+        while (availableBits <= 56 && nextByte < end) {
+            buffer = (buffer << 8) | (source.get(nextByte++) & 0xff);
+            availableBits += 8;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package webdata;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes a sequence of bits (most significant bit first) into a growable byte array. Bits are collected in a long
+ * buffer and moved to the array a whole byte at a time, so no intermediate string or object is created per number.
+ * The whole bytes of the array can be moved to an output at any time with flushBytes(), so long sequences can be
+ * written with a bounded array.
+ */
+public class BitWriter {
+    private byte[] bytes;
+    private int numBytes;
+    private long flushedBytes;  // the number of bytes that were moved to an output by flushBytes()
+    private long buffer;  // the low bufferedBits bits of the buffer are the bits that were not moved to the array yet
+    private int bufferedBits;
+
+    public BitWriter() {
+        this(64);
+    }
+
+    public BitWriter(int capacity) {
+        bytes = new byte[Math.max(capacity, 8)];
+        reset();
+    }
+
+    /**
+     * Clear all written bits, so the writer can be reused.
+     */
+    public void reset() {
+        numBytes = 0;
+        flushedBytes = 0;
+        buffer = 0;
+        bufferedBits = 0;
+    }
+
+    /**
+     * @return the number of bits that were written so far.
+     */
+    public long bitLength() {
+        return 8 * (flushedBytes + numBytes) + bufferedBits;
+    }
+
+    /**
+     * @return the number of whole bytes that are held in the array.
+     */
+    public int bufferedBytes() {
+        return numBytes;
+    }
+
+    /**
+     * Write the numBits lowest bits of the given value (0 <= numBits <= 32).
+     */
+    public void writeBits(long value, int numBits) {
+        buffer = (buffer << numBits) | (value & ((1L << numBits) - 1));
+        bufferedBits += numBits;
+        while (bufferedBits >= 8) {
+            bufferedBits -= 8;
+            appendByte((byte) (buffer >>> bufferedBits));
+        }
+    }
+
+    /**
+     * Write the given non-negative number using gamma encoding. As in the original format, the encoded value is
+     * num + 1 so 0 can be encoded as well.
+     */
+    public void writeGamma(int num) {
+        long value = (long) num + 1;
+        int length = 63 - Long.numberOfLeadingZeros(value);  // number of bits after the leading 1
+        writeBits((1L << length) - 1, length);  // unary length
+        writeBits(0, 1);
+        writeBits(value, length);  // the offset, without the leading 1
+    }
+
+    /**
+     * Write the given non-negative number using delta encoding (the length of the number is gamma encoded).
+     */
+    public void writeDelta(int num) {
+        long value = (long) num + 1;
+        int length = 63 - Long.numberOfLeadingZeros(value);
+        writeGamma(length);
+        writeBits(value, length);
+    }
+
+    /**
+     * Move the whole bytes that were written so far to the given output. The bits of an incomplete byte are kept.
+     */
+    public void flushBytes(OutputStream out) throws IOException {
+        out.write(bytes, 0, numBytes);
+        flushedBytes += numBytes;
+        numBytes = 0;
+    }
+
+    /**
+     * Pad the written bits with 0s to the nearest multiple of 8 and return the resulting bytes, which must not have
+     * been flushed.
+     */
+    public byte[] toByteArray() {
+        padToByte();
+        return Arrays.copyOf(bytes, numBytes);
+    }
+
+    /**
+     * Pad the written bits with 0s to the nearest multiple of 8 and write the bytes that were not flushed yet to the
+     * given output.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        padToByte();
+        flushBytes(out);
+    }
+
+    private void padToByte() {
+        if (bufferedBits > 0) {
+            writeBits(0, 8 - bufferedBits);
+        }
+    }
+
+    private void appendByte(byte b) {
+        if (numBytes == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        bytes[numBytes++] = b;
+    }
+}
@@ -0,0 +1,128 @@
+package webdata;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Base class of the codecs that encode posting lists in blocks of BLOCK_SIZE postings. Every block holds the gaps
+ * between its review ids (the first gap is from the last review of the previous block) and then the frequencies, both
+ * minus 1 so most values are small, and each encoded by the integer codec of the subclass.
+ * A list with n blocks starts with n-1 skip entries: the j-th entry holds the last review id of block j and the offset
+ * of block j+1 in bytes from the end of the skip entries, so a reader can jump directly to any block
+ * (see BlockPostingsIterator).
+ */
+public abstract class BlockPostingsCodec implements PostingsCodec {
+    public static final int BLOCK_SIZE = 128;
+    public static final int SKIP_ENTRY_SIZE = 2 * Integer.BYTES;  // last review id, byte offset
+
+    private final int[] reviewIds = new int[BLOCK_SIZE];  // the postings of the block being written
+    private final int[] freqs = new int[BLOCK_SIZE];
+    private final int[] values = new int[BLOCK_SIZE];
+    private PostingsOutput output;  // the output of the last list, and a DataOutputStream writing to it
+    private DataOutputStream dataOutput;
+
+    /**
+     * Encode the first n numbers of the given array, which are all non-negative.
+     */
+    protected abstract void encodeBlock(int[] values, int n, DataOutputStream out) throws IOException;
+
+    /**
+     * Decode n numbers that were encoded by encodeBlock() from the current position of the given buffer into the
+     * given array, and move the buffer to the end of the encoded numbers.
+     */
+    protected abstract void decodeBlock(ByteBuffer in, int[] values, int n);
+
+    /**
+     * Start encoding a posting list. The codec has a single block buffer, so only one list can be written at a time.
+     */
+    @Override
+    public PostingsWriter writer(PostingsOutput out, int count) throws IOException {
+        return new Writer(out, count);
+    }
+
+    @Override
+    public PostingsIterator iterator(ByteBuffer list, int count) {
+        return new BlockPostingsIterator(this, list, count);
+    }
+
+    /**
+     * @return the number of blocks of a posting list of the given length.
+     */
+    public static int getNumBlocks(int count) {
+        return (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * Writes a list into a range reserved for its skip entries followed by its blocks. Every block is encoded and
+     * written to the output once its postings were added.
+     */
+    private class Writer implements PostingsWriter {
+        private final PostingsOutput out;
+        private final DataOutputStream blocksOut;
+        private final int count;
+        private final long start;  // the position of the list in the output
+        private final long blocksStart;  // the position of the first block in the output
+        private final PostingsOutput.Range skips;
+        private int added;
+        private int blockSize;  // the number of postings in the current block
+        private int previousReviewId;  // the last review id of the previous block
+
+        private Writer(PostingsOutput out, int count) throws IOException {
+            this.out = out;
+            if (out != output) {
+                output = out;
+                dataOutput = new DataOutputStream(out);
+            }
+            this.blocksOut = dataOutput;
+            this.count = count;
+            this.start = out.position();
+            this.skips = out.reserve((long) Math.max(0, getNumBlocks(count) - 1) * SKIP_ENTRY_SIZE);
+            this.blocksStart = out.position();
+            this.added = 0;
+            this.blockSize = 0;
+            this.previousReviewId = 0;
+        }
+
+        @Override
+        public void add(int reviewId, int freq) throws IOException {
+            reviewIds[blockSize] = reviewId;
+            freqs[blockSize] = freq;
+            blockSize++;
+            added++;
+            if (blockSize == BLOCK_SIZE) {
+                writeBlock();
+            }
+        }
+
+        @Override
+        public long finish() throws IOException {
+            if (added != count) {
+                throw new IllegalStateException("Added " + added + " postings to a list of " + count);
+            }
+            if (blockSize > 0) {
+                writeBlock();
+            }
+            skips.flush();
+            return (long) Math.max(0, getNumBlocks(count) - 1) * SKIP_ENTRY_SIZE;
+        }
+
+        private void writeBlock() throws IOException {
+            if (added > blockSize) {  // not the first block
+                skips.writeInt(previousReviewId);
+                skips.writeInt((int) (out.position() - blocksStart));
+            }
+            for (int i = 0; i < blockSize; i++) {
+                values[i] = reviewIds[i] - (i > 0 ? reviewIds[i - 1] : previousReviewId) - 1;
+            }
+            encodeBlock(values, blockSize, blocksOut);
+            for (int i = 0; i < blockSize; i++) {
+                values[i] = freqs[i] - 1;
+            }
+            encodeBlock(values, blockSize, blocksOut);
+            PostingsCodec.checkListSize(out.position() - start);
+            previousReviewId = reviewIds[blockSize - 1];
+            blockSize = 0;
+        }
+    }
+}
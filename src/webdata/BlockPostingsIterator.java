@@ -0,0 +1,135 @@
+package webdata;
+
+import java.nio.ByteBuffer;
+
+/**
+ * PostingsIterator over a posting list that was encoded by a BlockPostingsCodec. The postings are decoded a whole block
+ * at a time, and advance() uses the skip entries to find the block of the target without decoding the blocks before
+ * it.
+ */
+public class BlockPostingsIterator implements PostingsIterator {
+    private final BlockPostingsCodec codec;
+    private final ByteBuffer invertedList;
+    private final ByteBuffer blocks;
+    private final int blocksStart;  // the position of the first block, after the skip entries
+    private final int numPostings;
+    private final int numBlocks;
+    private final int[] docIds;  // the decoded postings of the current block
+    private final int[] freqs;
+    private int block;  // the current block, -1 before the first block is decoded
+    private int blockSize;
+    private int index;  // the index of the current posting in the block
+    private int docId;
+
+    /**
+     * @param invertedList the encoded bytes of the list.
+     * @param numPostings the number of postings (review ids) in the list, i.e. the frequency of the token.
+     */
+    public BlockPostingsIterator(BlockPostingsCodec codec, ByteBuffer invertedList, int numPostings) {
+        this.codec = codec;
+        this.invertedList = invertedList;
+        this.numPostings = numPostings;
+        this.numBlocks = BlockPostingsCodec.getNumBlocks(numPostings);
+        this.docIds = new int[Math.min(numPostings, BlockPostingsCodec.BLOCK_SIZE)];
+        this.freqs = new int[docIds.length];
+        this.blocks = invertedList.duplicate();
+        this.blocksStart = invertedList.position() + Math.max(0, numBlocks - 1) * BlockPostingsCodec.SKIP_ENTRY_SIZE;
+        this.block = -1;
+        this.blockSize = 0;
+        this.index = -1;
+        this.docId = -1;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+        if (docId == NO_MORE_DOCS) {
+            return docId;
+        }
+        if (index + 1 == blockSize) {
+            if (block + 1 == numBlocks) {
+                docId = NO_MORE_DOCS;
+                return docId;
+            }
+            loadBlock(block + 1);
+        }
+        index++;
+        docId = docIds[index];
+        return docId;
+    }
+
+    @Override
+    public int advance(int target) {
+        if (docId == NO_MORE_DOCS) {
+            return docId;
+        }
+        if (block == -1 || docIds[blockSize - 1] < target) {
+            // Find the first block whose last review is not smaller than the target. The last block has no skip entry.
+            int next = block + 1;
+            while (next < numBlocks - 1 && getSkipReviewId(next) < target) {
+                next++;
+            }
+            if (next == numBlocks) {
+                docId = NO_MORE_DOCS;
+                return docId;
+            }
+            loadBlock(next);
+        }
+        while (docId < target) {
+            nextDoc();
+        }
+        return docId;
+    }
+
+    @Override
+    public int freq() {
+        return docId == -1 || docId == NO_MORE_DOCS ? 0 : freqs[index];
+    }
+
+    @Override
+    public int cost() {
+        return numPostings;
+    }
+
+    /**
+     * Decode the review ids and the frequencies of the given block.
+     */
+    private void loadBlock(int newBlock) {
+        int previousDocId = 0;
+        if (newBlock > 0) {
+            blocks.position(blocksStart + getSkipOffset(newBlock));
+            previousDocId = getSkipReviewId(newBlock - 1);
+        } else {
+            blocks.position(blocksStart);
+        }
+        blockSize = Math.min(BlockPostingsCodec.BLOCK_SIZE, numPostings - newBlock * BlockPostingsCodec.BLOCK_SIZE);
+        codec.decodeBlock(blocks, docIds, blockSize);
+        codec.decodeBlock(blocks, freqs, blockSize);
+        for (int i = 0; i < blockSize; i++) {
+            previousDocId += docIds[i] + 1;
+            docIds[i] = previousDocId;
+            freqs[i]++;
+        }
+        block = newBlock;
+        index = -1;
+    }
+
+    /**
+     * @return the last review id of the given block (which is not the last block).
+     */
+    private int getSkipReviewId(int block) {
+        return invertedList.getInt(invertedList.position() + block * BlockPostingsCodec.SKIP_ENTRY_SIZE);
+    }
+
+    /**
+     * @return the offset of the given block (which is not the first block) from the end of the skip entries.
+     */
+    private int getSkipOffset(int block) {
+        return invertedList.getInt(invertedList.position() + (block - 1) * BlockPostingsCodec.SKIP_ENTRY_SIZE +
+                Integer.BYTES);
+    }
+}
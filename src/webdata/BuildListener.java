@@ -0,0 +1,34 @@
+package webdata;
+
+/**
+ * Receives the progress and the metrics of an index build (see BuildMetrics). Listeners are added to the index writer
+ * with addBuildListener(), and are called from the thread that called the writer. All methods do nothing by default.
+ */
+public interface BuildListener {
+    /**
+     * Called when a phase of the build starts.
+     */
+    default void phaseStarted(String phase) {
+    }
+
+    /**
+     * Called when a phase of the build ends.
+     * @param nanos the duration of the phase.
+     * @param heapPeakBytes the highest heap usage during the phase.
+     */
+    default void phaseFinished(String phase, long nanos, long heapPeakBytes) {
+    }
+
+    /**
+     * Called when a counter is set, e.g. the number of reviews read so far, which is updated every
+     * BuildMetrics.PROGRESS_INTERVAL reviews while the reviews are read.
+     */
+    default void counterUpdated(String name, long value) {
+    }
+
+    /**
+     * Called once the index is written, with all metrics of the build.
+     */
+    default void buildFinished(BuildMetrics metrics) {
+    }
+}
@@ -0,0 +1,225 @@
+package webdata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.*;
+
+/**
+ * Metrics of a single index build: the duration and the heap high-water mark of every phase, and counters such as
+ * the number of reviews, tokens and unique terms, and the size of every file of the index. The metrics are passed to
+ * the BuildListeners as they are recorded, and a summary is written as JSON to SUMMARY_FILE in the index directory
+ * when the build ends, so builds can be compared between versions.
+ * The heap high-water mark is the sum of the peak usage of the heap memory pools, which are reset at the start of
+ * every phase, so it includes garbage that was not collected yet.
+ */
+public class BuildMetrics {
+    public static final String SUMMARY_FILE = "build_summary.json";
+    public static final int PROGRESS_INTERVAL = 10000;  // the number of reviews between updates of REVIEWS
+
+    // Counters
+    public static final String REVIEWS = "reviews";
+    public static final String TOKENS = "tokens";
+    public static final String UNIQUE_TERMS = "uniqueTerms";
+    public static final String PRODUCTS = "products";
+    public static final String POSTINGS_BYTES = "postingsBytes";
+    public static final String SKIP_BYTES = "skipBytes";
+    public static final String RUNS = "runs";
+    public static final String MERGE_PASSES = "mergePasses";
+    public static final String FILE_BYTES_PREFIX = "bytes.";  // followed by the name of an index file
+
+    private final List<BuildListener> listeners;
+    private final List<MemoryPoolMXBean> heapPools;
+    private final Map<String, Long> phaseNanos;
+    private final Map<String, Long> phaseHeapPeaks;
+    private final Map<String, Long> counters;
+    private final long startNanos;
+    private long totalNanos;
+    private long heapHighWater;
+    private String phase;  // the current phase, null between phases
+    private long phaseStartNanos;
+
+    public BuildMetrics(List<BuildListener> listeners) {
+        this.listeners = listeners;
+        this.heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                heapPools.add(pool);
+            }
+        }
+        this.phaseNanos = new LinkedHashMap<>();
+        this.phaseHeapPeaks = new LinkedHashMap<>();
+        this.counters = new LinkedHashMap<>();
+        this.startNanos = System.nanoTime();
+        this.totalNanos = 0;
+        this.heapHighWater = 0;
+        this.phase = null;
+    }
+
+    /**
+     * Start timing the given phase, ending the current phase if there is one.
+     */
+    public void startPhase(String name) {
+        if (phase != null) {
+            endPhase();
+        }
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+        }
+        phase = name;
+        phaseStartNanos = System.nanoTime();
+        for (BuildListener listener : listeners) {
+            listener.phaseStarted(name);
+        }
+    }
+
+    /**
+     * End the current phase, and record its duration and heap high-water mark.
+     */
+    public void endPhase() {
+        long nanos = System.nanoTime() - phaseStartNanos;
+        long heapPeak = getHeapPeak();
+        String name = phase;
+        phase = null;
+        phaseNanos.merge(name, nanos, Long::sum);
+        phaseHeapPeaks.merge(name, heapPeak, Math::max);
+        heapHighWater = Math.max(heapHighWater, heapPeak);
+        for (BuildListener listener : listeners) {
+            listener.phaseFinished(name, nanos, heapPeak);
+        }
+    }
+
+    /**
+     * Set the value of the given counter.
+     */
+    public void setCounter(String name, long value) {
+        counters.put(name, value);
+        for (BuildListener listener : listeners) {
+            listener.counterUpdated(name, value);
+        }
+    }
+
+    /**
+     * Set a FILE_BYTES_PREFIX counter with the size of every file in the given directory.
+     */
+    public void setFileSizes(String dir) {
+        File[] files = new File(dir).listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isFile() && !file.getName().equals(SUMMARY_FILE)) {
+                setCounter(FILE_BYTES_PREFIX + file.getName(), file.length());
+            }
+        }
+    }
+
+    /**
+     * End the build: end the current phase, write the summary to the given directory and pass the metrics to the
+     * listeners.
+     */
+    public void finish(String dir) throws IOException {
+        if (phase != null) {
+            endPhase();
+        }
+        totalNanos = System.nanoTime() - startNanos;
+        writeSummary(dir + "/" + SUMMARY_FILE);
+        for (BuildListener listener : listeners) {
+            listener.buildFinished(this);
+        }
+    }
+
+    /**
+     * Write the metrics to the given file as a JSON object.
+     */
+    public void writeSummary(String path) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"totalMillis\": ").append(totalNanos / 1_000_000).append(",\n");
+        json.append("  \"reviewsPerSecond\": ").append(Math.round(getReviewsPerSecond())).append(",\n");
+        json.append("  \"heapHighWaterBytes\": ").append(heapHighWater).append(",\n");
+        json.append("  \"phases\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Long> entry : phaseNanos.entrySet()) {
+            json.append(separator).append("    ").append(quote(entry.getKey())).append(": {\"millis\": ")
+                    .append(entry.getValue() / 1_000_000).append(", \"heapPeakBytes\": ")
+                    .append(phaseHeapPeaks.get(entry.getKey())).append("}");
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"counters\": {");
+        separator = "\n";
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            json.append(separator).append("    ").append(quote(entry.getKey())).append(": ").append(entry.getValue());
+            separator = ",\n";
+        }
+        json.append("\n  }\n}\n");
+        try (PrintWriter out = new PrintWriter(path, "UTF-8")) {
+            out.print(json);
+        }
+    }
+
+    /**
+     * @return the duration of the whole build, available once it is finished.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return the duration of every phase, by the order in which the phases started.
+     */
+    public Map<String, Long> getPhaseNanos() {
+        return Collections.unmodifiableMap(phaseNanos);
+    }
+
+    /**
+     * @return the heap high-water mark of every phase.
+     */
+    public Map<String, Long> getPhaseHeapPeaks() {
+        return Collections.unmodifiableMap(phaseHeapPeaks);
+    }
+
+    public Map<String, Long> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    /**
+     * @return the value of the given counter, or 0 if it was not set.
+     */
+    public long getCounter(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    /**
+     * @return the highest heap usage during the build.
+     */
+    public long getHeapHighWater() {
+        return heapHighWater;
+    }
+
+    /**
+     * @return the number of reviews indexed per second, over the whole build.
+     */
+    public double getReviewsPerSecond() {
+        return totalNanos > 0 ? getCounter(REVIEWS) * 1e9 / totalNanos : 0;
+    }
+
+    private long getHeapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = pool.getPeakUsage();
+            if (usage != null) {
+                peak += usage.getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
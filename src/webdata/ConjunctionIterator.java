@@ -0,0 +1,79 @@
+package webdata;
+
+import java.util.List;
+
+/**
+ * PostingsIterator over the reviews that appear in all of the given posting lists (AND). The lists are intersected
+ * document at a time: the first (rarest) list leads, and the others are advanced to its current review.
+ * The frequency of a review is the sum of its frequencies in all the lists.
+ */
+public class ConjunctionIterator implements PostingsIterator {
+    private final PostingsIterator[] iterators;
+    private int docId;
+
+    /**
+     * @param iterators the posting lists to intersect, preferably ordered from the shortest to the longest.
+     */
+    public ConjunctionIterator(List<PostingsIterator> iterators) {
+        this.iterators = iterators.toArray(new PostingsIterator[0]);
+        this.docId = -1;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+        if (iterators.length == 0) {
+            return docId = NO_MORE_DOCS;
+        }
+        return doNext(iterators[0].nextDoc());
+    }
+
+    @Override
+    public int advance(int target) {
+        if (iterators.length == 0) {
+            return docId = NO_MORE_DOCS;
+        }
+        return doNext(iterators[0].advance(target));
+    }
+
+    /**
+     * Advance all lists until they agree on a review, starting with the given review of the leading list.
+     */
+    private int doNext(int doc) {
+        int i = 1;
+        while (doc != NO_MORE_DOCS && i < iterators.length) {
+            int other = iterators[i].docId() < doc ? iterators[i].advance(doc) : iterators[i].docId();
+            if (other == NO_MORE_DOCS) {
+                doc = NO_MORE_DOCS;
+            } else if (other > doc) {
+                doc = iterators[0].advance(other);  // the leading list is behind, start over from its new review
+                i = 1;
+            } else {
+                i++;
+            }
+        }
+        return docId = doc;
+    }
+
+    @Override
+    public int freq() {
+        int freq = 0;
+        for (PostingsIterator iterator : iterators) {
+            freq += iterator.freq();
+        }
+        return freq;
+    }
+
+    @Override
+    public int cost() {
+        int cost = iterators.length == 0 ? 0 : Integer.MAX_VALUE;
+        for (PostingsIterator iterator : iterators) {
+            cost = Math.min(cost, iterator.cost());
+        }
+        return cost;
+    }
+}
@@ -4,41 +4,78 @@ import java.io.*;
 import java.util.*;
 
 
-public class DataParser {
-    ArrayList<HashMap<String, String>> allReviews = new ArrayList<>();
+public class DataParser implements Iterator<HashMap<String, String>>, Closeable {
     public static final List<String> INTEREST_FIELDS = Arrays.asList("productId", "score", "helpfulness", "text");
 
+    private final BufferedReader br;
+    private String nextReviewStart;  // the "product/productId" line that opens the next review, null at end of input
+
 
     /**
-     * Given product review data, parses the data and creates a new list where each entry i contains hashmap with the fields
-     * of the review, i.e: productId->value, score->value, helpfulness->value, text->value.
+     * Given product review data, creates a parser that streams over the reviews in the file one at a time. Every call
+     * to next() returns a hashmap with the fields of the next review, i.e: productId->value, score->value,
+     * helpfulness->value, text->value.
      * inputFile is the path to the file containing the review data
      */
     public DataParser(String inputFile) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(inputFile));
+        br = new BufferedReader(new FileReader(inputFile));
         String line;
-        StringBuilder review = new StringBuilder();
-        while((line = br.readLine()) != null) {
-            if (line.contains("product/productId")){
-                if (!review.toString().equals("")){
-                    allReviews.add(parse_review(review.toString()));
-                }
-                review = new StringBuilder(line);
-            }
-            else{
+        while ((line = br.readLine()) != null && !line.contains("product/productId")) {
+            // skip everything before the first review
+        }
+        nextReviewStart = line;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextReviewStart != null;
+    }
+
+    /**
+     * Read the lines of the next review from the input file and return its parsed fields.
+     */
+    @Override
+    public HashMap<String, String> next() {
+        return parseReview(nextReview());
+    }
+
+    /**
+     * Read the lines of the next review from the input file without parsing them, so they can be parsed later (or by
+     * another thread) with parseReview().
+     * @return the lines of the review, concatenated.
+     */
+    public String nextReview() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        StringBuilder review = new StringBuilder(nextReviewStart);
+        String line;
+        try {
+            while ((line = br.readLine()) != null && !line.contains("product/productId")) {
                 review.append(line);
             }
+        } catch (IOException e) {
+            System.out.println("Error occurred while reading the reviews input file.");
+            e.printStackTrace();
+            System.exit(1);
+            return null;
         }
-        allReviews.add(parse_review(review.toString()));  // add the last review
+        nextReviewStart = line;
+        return review.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        br.close();
     }
 
     /**
-     * Given a single review, parse the review and return a hash table containing only the relevant fields of the
-     * review, i.e: productId, score, helpfulness, text.
+     * Given a single review, as returned by nextReview(), parse the review and return a hash table containing only the
+     * relevant fields of the review, i.e: productId, score, helpfulness, text.
      * @param review: the review that should be parsed.
      * @return a hash table where the keys are the relevant fields mentioned above and their corresponding values.
      */
-    private static HashMap<String, String> parse_review(String review){
+    public static HashMap<String, String> parseReview(String review){
         List<String> fields = Arrays.asList(review.split("review/"));
         HashMap<String, String> review_fields = new HashMap<String, String>();
 
@@ -0,0 +1,94 @@
+package webdata;
+
+import java.nio.ByteBuffer;
+
+/**
+ * PostingsIterator over an inverted index list that was encoded by EliasDeltaCodec: delta encoded
+ * reviewId-gap, tf pairs, where the first review id is stored as is. If the list starts with skip entries, advance()
+ * uses them to jump over whole groups of postings without decoding them.
+ */
+public class DeltaPostingsIterator implements PostingsIterator {
+    private final ByteBuffer invertedList;
+    private final BitReader reader;
+    private final int numPostings;
+    private final int skipInterval;
+    private final int numSkips;
+    private int decoded;  // number of postings that were decoded so far (or skipped over)
+    private int nextSkip;  // the first skip entry that was not used yet (1-based)
+    private int docId;
+    private int freq;
+
+    /**
+     * @param invertedList the encoded bytes of the list.
+     * @param numPostings the number of postings (review ids) in the list, i.e. the frequency of the token.
+     * @param skipInterval the skip interval the list was written with, 0 if it has no skip entries.
+     */
+    public DeltaPostingsIterator(ByteBuffer invertedList, int numPostings, int skipInterval) {
+        this.invertedList = invertedList;
+        this.numPostings = numPostings;
+        this.skipInterval = skipInterval;
+        this.numSkips = EliasDeltaCodec.getNumSkips(numPostings, skipInterval);
+        ByteBuffer postings = invertedList.duplicate();
+        postings.position(invertedList.position() + numSkips * EliasDeltaCodec.SKIP_ENTRY_SIZE);
+        this.reader = new BitReader(postings);
+        this.decoded = 0;
+        this.nextSkip = 1;
+        this.docId = -1;
+        this.freq = 0;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+        if (decoded == numPostings) {
+            docId = NO_MORE_DOCS;
+            freq = 0;
+            return docId;
+        }
+        docId = Math.max(docId, 0) + reader.readDelta();
+        freq = reader.readDelta();
+        decoded++;
+        return docId;
+    }
+
+    @Override
+    public int advance(int target) {
+        // Find the last skip entry that ends before the target, and continue decoding from it
+        int skip = 0;
+        while (nextSkip <= numSkips && getSkipReviewId(nextSkip) < target) {
+            skip = nextSkip;
+            nextSkip++;
+        }
+        if (skip > 0 && skip * skipInterval > decoded) {
+            reader.seek(getSkipOffset(skip));
+            docId = getSkipReviewId(skip);
+            decoded = skip * skipInterval;
+        }
+        while (docId < target) {
+            nextDoc();
+        }
+        return docId;
+    }
+
+    @Override
+    public int freq() {
+        return freq;
+    }
+
+    @Override
+    public int cost() {
+        return numPostings;
+    }
+
+    private int getSkipReviewId(int skip) {
+        return invertedList.getInt(invertedList.position() + (skip - 1) * EliasDeltaCodec.SKIP_ENTRY_SIZE);
+    }
+
+    private long getSkipOffset(int skip) {
+        return invertedList.getLong(invertedList.position() + (skip - 1) * EliasDeltaCodec.SKIP_ENTRY_SIZE + Integer.BYTES);
+    }
+}
@@ -0,0 +1,86 @@
+package webdata;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * PostingsIterator over the reviews that appear in at least one of the given posting lists (OR). The lists are merged
+ * document at a time using a min-heap ordered by the current review of every list.
+ * The frequency of a review is the sum of its frequencies in the lists that contain it.
+ */
+public class DisjunctionIterator implements PostingsIterator {
+    private final List<PostingsIterator> iterators;
+    private final PriorityQueue<PostingsIterator> queue;
+    private int docId;
+
+    public DisjunctionIterator(List<PostingsIterator> iterators) {
+        this.iterators = iterators;
+        this.queue = new PriorityQueue<>(Math.max(1, iterators.size()), Comparator.comparingInt(PostingsIterator::docId));
+        this.docId = -1;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+        if (docId == -1) {
+            for (PostingsIterator iterator : iterators) {
+                if (iterator.nextDoc() != NO_MORE_DOCS) {
+                    queue.add(iterator);
+                }
+            }
+            return updateDocId();
+        }
+        if (docId == NO_MORE_DOCS) {
+            return docId;
+        }
+        return advance(docId + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        if (docId == -1) {
+            for (PostingsIterator iterator : iterators) {
+                if (iterator.advance(target) != NO_MORE_DOCS) {
+                    queue.add(iterator);
+                }
+            }
+            return updateDocId();
+        }
+        while (!queue.isEmpty() && queue.peek().docId() < target) {
+            PostingsIterator top = queue.poll();
+            if (top.advance(target) != NO_MORE_DOCS) {
+                queue.add(top);
+            }
+        }
+        return updateDocId();
+    }
+
+    private int updateDocId() {
+        return docId = queue.isEmpty() ? NO_MORE_DOCS : queue.peek().docId();
+    }
+
+    @Override
+    public int freq() {
+        int freq = 0;
+        for (PostingsIterator iterator : queue) {
+            if (iterator.docId() == docId) {
+                freq += iterator.freq();
+            }
+        }
+        return freq;
+    }
+
+    @Override
+    public int cost() {
+        long cost = 0;
+        for (PostingsIterator iterator : iterators) {
+            cost += iterator.cost();
+        }
+        return (int) Math.min(cost, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,103 @@
+package webdata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes every posting list as Elias delta codes of reviewId-gap, tf pairs, where the first review id is stored as is,
+ * padded to a whole byte. This is the most compact codec, but it is decoded bit by bit.
+ * If skips are enabled, the encoded list is preceded by a skip entry for every skipInterval postings. The j-th entry
+ * holds the review id of posting j*skipInterval-1 (an int) and the bit offset (from the end of the skip entries) at
+ * which posting j*skipInterval starts (a long, since a list of over 256MB has more than 2^31 bits), so a reader can
+ * start decoding from there (see DeltaPostingsIterator).
+ */
+public class EliasDeltaCodec implements PostingsCodec {
+    public static final int SKIP_ENTRY_SIZE = Integer.BYTES + Long.BYTES;  // last review id, bit offset
+    private static final int FLUSH_BYTES = 8192;
+
+    private final int skipInterval;
+    private final BitWriter bitWriter;
+
+    /**
+     * @param skipInterval the number of postings between two skip entries, or 0 to encode the lists without skips.
+     */
+    public EliasDeltaCodec(int skipInterval) {
+        this.skipInterval = skipInterval;
+        this.bitWriter = new BitWriter();
+    }
+
+    @Override
+    public int getId() {
+        return ELIAS_DELTA;
+    }
+
+    /**
+     * Start encoding a posting list. The codec has a single bit buffer, so only one list can be written at a time.
+     */
+    @Override
+    public PostingsWriter writer(PostingsOutput out, int count) throws IOException {
+        return new Writer(out, count);
+    }
+
+    @Override
+    public PostingsIterator iterator(ByteBuffer list, int count) {
+        return new DeltaPostingsIterator(list, count, skipInterval);
+    }
+
+    /**
+     * @return the number of skip entries saved for a posting list of the given length.
+     */
+    public static int getNumSkips(int numPostings, int skipInterval) {
+        return skipInterval > 0 && numPostings > 0 ? (numPostings - 1) / skipInterval : 0;
+    }
+
+    /**
+     * Writes a list into a range reserved for its skip entries followed by its bits. The bits are moved to the output
+     * every FLUSH_BYTES bytes.
+     */
+    private class Writer implements PostingsWriter {
+        private final PostingsOutput out;
+        private final int count;
+        private final long start;  // the position of the list in the output
+        private final PostingsOutput.Range skips;
+        private int added;
+        private int previousReviewId;
+
+        private Writer(PostingsOutput out, int count) throws IOException {
+            this.out = out;
+            this.count = count;
+            this.start = out.position();
+            this.skips = out.reserve((long) getNumSkips(count, skipInterval) * SKIP_ENTRY_SIZE);
+            this.added = 0;
+            this.previousReviewId = 0;
+            bitWriter.reset();
+        }
+
+        @Override
+        public void add(int reviewId, int freq) throws IOException {
+            if (added > 0 && skipInterval > 0 && added % skipInterval == 0) {
+                skips.writeInt(previousReviewId);
+                skips.writeLong(bitWriter.bitLength());
+            }
+            bitWriter.writeDelta(reviewId - previousReviewId);
+            bitWriter.writeDelta(freq);
+            previousReviewId = reviewId;
+            added++;
+            if (bitWriter.bufferedBytes() >= FLUSH_BYTES) {
+                bitWriter.flushBytes(out);
+                PostingsCodec.checkListSize(out.position() - start);
+            }
+        }
+
+        @Override
+        public long finish() throws IOException {
+            if (added != count) {
+                throw new IllegalStateException("Added " + added + " postings to a list of " + count);
+            }
+            bitWriter.writeTo(out);
+            PostingsCodec.checkListSize(out.position() - start);
+            skips.flush();
+            return (long) getNumSkips(count, skipInterval) * SKIP_ENTRY_SIZE;
+        }
+    }
+}
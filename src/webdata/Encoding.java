@@ -1,161 +1,251 @@
 package webdata;
 
-import java.io.ByteArrayOutputStream;
-import java.math.BigInteger;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.List;
 
 public class Encoding {
+    private static final int GROUP_VARINT_MAX_LENGTH = 1 + 4 * Integer.BYTES;
+    // For every selector byte, the byte lengths of the 4 numbers of its group
+    private static final byte[] GROUP_VARINT_LENGTHS = new byte[4 * 256];
+    // For every selector byte, the total length of its group, including the selector
+    private static final byte[] GROUP_VARINT_GROUP_LENGTHS = new byte[256];
+    // The mask of the bytes of a number, by its byte length
+    private static final int[] GROUP_VARINT_MASKS = {0, 0xFF, 0xFFFF, 0xFFFFFF, 0xFFFFFFFF};
+    private static final VarHandle INT_LITTLE_ENDIAN =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    static {
+        for (int selector = 0; selector < 256; selector++) {
+            int groupLength = 1;
+            for (int i = 0; i < 4; i++) {
+                int numLength = 1 + ((selector >>> (2 * (3 - i))) & 3);
+                GROUP_VARINT_LENGTHS[4 * selector + i] = (byte) numLength;
+                groupLength += numLength;
+            }
+            GROUP_VARINT_GROUP_LENGTHS[selector] = (byte) groupLength;
+        }
+    }
 
     /**
-     * Encode the given number using gamma encoding.
-     * The encoded output is a string representing the bytes of the number.
+     * Encode the given numbers using gamma encoding.
+     * The output is padded with 0s to the nearest multiple of 8 bits.
      */
-    public static String gammaEncode(int num) {
-        String offset = Integer.toBinaryString(num + 1);
-        return "1".repeat(offset.length() - 1) + "0" + offset.substring(1);
+    public static byte[] gammaEncode(List<Integer> nums) {
+        BitWriter writer = new BitWriter();
+        for (int num : nums) {
+            writer.writeGamma(num);
+        }
+        return writer.toByteArray();
     }
 
     /**
-     * Encode the given number using delta encoding.
-     * The encoded output is a string representing the bytes of the number.
+     * Encode the given numbers using delta encoding.
+     * The output is padded with 0s to the nearest multiple of 8 bits.
      */
-    public static String deltaEncode(int num) {
-        String offset = Integer.toBinaryString(num + 1);
-        return gammaEncode(offset.length() - 1) + offset.substring(1);
+    public static byte[] deltaEncode(List<Integer> nums) {
+        BitWriter writer = new BitWriter();
+        for (int num : nums) {
+            writer.writeDelta(num);
+        }
+        return writer.toByteArray();
     }
 
     /**
-     * Decode the given string, which represents a binary sequence using gamma code.
+     * Decode the first count numbers of the given bytes, using gamma code.
      */
-    public static ArrayList<Integer> gammaDecode(String encoding) {
-        ArrayList<Integer> output = new ArrayList<>();
-        int bitsRead = 0;
-        while (bitsRead < encoding.length()) {
-            int length = encoding.substring(bitsRead).indexOf('0'); // Find the first 0
-            int offsetLoc = bitsRead + length + 1;
-            output.add(Integer.parseInt("1" + encoding.substring(offsetLoc, offsetLoc + length), 2) - 1);
-            bitsRead = offsetLoc + length;
+    public static int[] gammaDecode(ByteBuffer code, int count) {
+        BitReader reader = new BitReader(code);
+        int[] output = new int[count];
+        for (int i = 0; i < count; i++) {
+            output[i] = reader.readGamma();
         }
         return output;
     }
 
     /**
-     * Decode the given string, which represents a binary sequence using delta code.
+     * Decode the first count numbers of the given bytes, using delta code.
      */
-    public static ArrayList<Integer> deltaDecode(String encoding) {
-        ArrayList<Integer> output = new ArrayList<>();
-        int bitsRead = 0;
-        while (bitsRead < encoding.length()) {
-            int length = encoding.substring(bitsRead).indexOf('0'); // Find the first 0
-            int offsetLoc = bitsRead + length + 1;
-            int actualLength = Integer.parseInt("1" + encoding.substring(offsetLoc, offsetLoc + length), 2);
-            bitsRead = offsetLoc + length;
-
-            output.add(Integer.parseInt("1" + encoding.substring(bitsRead, bitsRead + actualLength - 1), 2) - 1);
-            bitsRead += actualLength - 1;
+    public static int[] deltaDecode(ByteBuffer code, int count) {
+        BitReader reader = new BitReader(code);
+        int[] output = new int[count];
+        for (int i = 0; i < count; i++) {
+            output[i] = reader.readDelta();
         }
         return output;
     }
 
     /**
-     * Decode the given byte array, using gamma code.
+     * Decode the first count numbers of the given byte array, using gamma code.
      */
-    public static ArrayList<Integer> gammaDecode(byte[] code) {
-        return gammaDecode(byteToString(code));
+    public static int[] gammaDecode(byte[] code, int count) {
+        return gammaDecode(ByteBuffer.wrap(code), count);
     }
 
     /**
-     * Decode the given byte array, using delta code.
+     * Decode the first count numbers of the given byte array, using delta code.
      */
-    public static ArrayList<Integer> deltaDecode(byte[] code) {
-        return deltaDecode(byteToString(code));
+    public static int[] deltaDecode(byte[] code, int count) {
+        return deltaDecode(ByteBuffer.wrap(code), count);
     }
 
     /**
-     * Convert the given string representing a bit sequence of numbers to a byte array.
+     * Write the given non-negative number using variable byte encoding: 7 bits in every byte, from the lowest bits to
+     * the highest, where the high bit of a byte is set if more bytes follow.
      */
-    public static byte[] toByteArray(String encoding) {
-        // Pad 0s to the nearest multiple of 8
-        String padded = encoding + "0".repeat((int) Math.ceil((float) encoding.length() / 8) * 8 - encoding.length());
-        byte[] ret = new BigInteger(padded, 2).toByteArray();
-        if (ret.length * 8 == padded.length() + 8) {
-            return Arrays.copyOfRange(ret, 1, ret.length);
-        } else {
-            return ret;
+    public static void writeVarint(DataOutput out, long num) throws IOException {
+        while ((num & ~0x7FL) != 0) {
+            out.writeByte((int) ((num & 0x7F) | 0x80));
+            num >>>= 7;
         }
+        out.writeByte((int) num);
     }
 
     /**
-     * Convert the given byte array to a string representing the bits of the byte array.
+     * Read a number that was written by writeVarint() from the current position of the given buffer.
      */
-    public static String byteToString(byte[] encoding) {
-        StringBuilder s = new StringBuilder();
-        for (byte b : encoding) {
-            String binary = Integer.toBinaryString(Byte.toUnsignedInt(b));
-            s.append("0".repeat(8 - binary.length())); // toBinaryString removes leading 0's
-            s.append(binary);
-        }
-        return s.toString();
+    public static long readVarint(ByteBuffer in) {
+        long num = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            num |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return num;
     }
 
     /**
-     * Encode the given list of numbers using Group-Varint-Encoding. The first byte of the resulting byte array
+     * Encode the given 4 numbers using Group-Varint-Encoding. The first byte of the resulting byte array
      * holds the number of bytes required to decode each of the next four numbers.
      */
     public static byte[] groupVarintEncode(int[] nums) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        out.write(0);
-        byte length = 0;
-        for (int i = 0; i < nums.length; i++) {
-            byte[] numAsBytes =  ByteBuffer.allocate(4).putInt(nums[i]).array();
-            byte numLength = -1;
-            for (int j = 0; j < numAsBytes.length; j++) {
-                if (numAsBytes[j] != 0) {
-                    out.write(numAsBytes[j]);
-                    numLength++;
-                } else if (j == numAsBytes.length - 1 & numLength == -1) {
-                    out.write(numAsBytes[j]);
-                    numLength++;
-                }
-            }
-            length = (byte) (length | (byte) (numLength << 2*(3 - i)));
-        }
-        byte[] output = out.toByteArray();
-        output[0] = length;
-        return output;
+        byte[] output = new byte[GROUP_VARINT_MAX_LENGTH];
+        int length = groupVarintEncode(nums, 0, 4, output, 0);
+        return Arrays.copyOf(output, length);
     }
 
     /**
-     * Decode the given byte array to numbers, using Group-Varing-Encoding.
+     * Decode 4 numbers from the given byte array, using Group-Varint-Encoding.
      */
     public static int[] groupVarintDecode(byte[] encoding) {
-        byte lengths = encoding[0];
         int[] output = new int[4];
-        int bytesRead = 1;
-        for (int i = 0; i < 4; i++) {
-            int bytesToRead = 1 + (lengths >> (2 * (3 - i))) & 3;
-            byte[] o = new byte[bytesToRead];
-            for (int b = 0; b < bytesToRead; b++) {
-                o[b] = encoding[bytesRead + b];
+        groupVarintDecode(encoding, 0, output, 0, 4);
+        return output;
+    }
+
+    /**
+     * Encode count numbers of nums, starting at numsOffset, into out starting at outOffset, using
+     * Group-Varint-Encoding. Every group of 4 numbers starts with a selector byte, where bits 2*(3-i) and 2*(3-i)+1
+     * hold the number of bytes of the i-th number minus 1, followed by the bytes of the numbers (least significant
+     * byte first). If count is not a multiple of 4, the last group is padded with zeros.
+     * @param out must have room for groupVarintMaxLength(count) bytes after outOffset. Bytes in this range after the
+     *            returned offset may be overwritten.
+     * @return the offset in out after the encoded numbers.
+     */
+    public static int groupVarintEncode(int[] nums, int numsOffset, int count, byte[] out, int outOffset) {
+        int pos = outOffset;
+        for (int group = 0; group < count; group += 4) {
+            int selectorPos = pos++;
+            int selector = 0;
+            for (int i = 0; i < 4; i++) {
+                int num = group + i < count ? nums[numsOffset + group + i] : 0;
+                int numLength = Math.max(1, 4 - Integer.numberOfLeadingZeros(num) / 8);
+                // The bytes beyond the length of the number are overwritten by the next number or are left unused
+                INT_LITTLE_ENDIAN.set(out, pos, num);
+                pos += numLength;
+                selector |= (numLength - 1) << (2 * (3 - i));
             }
-            bytesRead += bytesToRead;
-            output[i] = new BigInteger(1, o).intValue();
+            out[selectorPos] = (byte) selector;
         }
-        return output;
+        return pos;
     }
 
     /**
-     * Convert the given list of id-1, num-appearances-1, id-2, num-appearances-2... where the ids are given by their
-     * differences to a list where every id entry are the full id number.
+     * Decode count numbers that were encoded by groupVarintEncode(), from in starting at inOffset, into out starting
+     * at outOffset. The byte lengths of the numbers of every group are read from a table indexed by the selector byte,
+     * and every number is read with a single 4 byte load that is masked to its length, so there is no loop or
+     * branch per byte.
+     * @return the offset in in after the decoded groups.
      */
-    public static List<Integer> diffToIds(List<Integer> vals){
-        for (int i = 2; i < vals.size() - 1; i = i + 2){
-            vals.set(i, vals.get(i) + vals.get(i - 2));
+    public static int groupVarintDecode(byte[] in, int inOffset, int[] out, int outOffset, int count) {
+        int pos = inOffset;
+        for (int group = 0; group < count; group += 4) {
+            int selector = in[pos++] & 0xFF;
+            int groupSize = Math.min(4, count - group);
+            // Unless the group is at the end of the array, every number is read as a whole int and masked to its length
+            boolean fullReads = pos + 4 * Integer.BYTES <= in.length;
+            for (int i = 0; i < 4; i++) {
+                int numLength = GROUP_VARINT_LENGTHS[4 * selector + i];
+                int num;
+                if (fullReads) {
+                    num = (int) INT_LITTLE_ENDIAN.get(in, pos) & GROUP_VARINT_MASKS[numLength];
+                } else {
+                    num = 0;
+                    for (int b = 0; b < numLength; b++) {
+                        num |= (in[pos + b] & 0xFF) << (8 * b);
+                    }
+                }
+                if (i < groupSize) {
+                    out[outOffset + group + i] = num;
+                }
+                pos += numLength;
+            }
         }
-        return vals;
+        return pos;
+    }
+
+    /**
+     * Decode count numbers that were encoded by groupVarintEncode(), from the current position of the given buffer into
+     * out starting at outOffset, and move the buffer to the end of the decoded groups. The numbers are read directly
+     * from the buffer (which may be a view of a mapped file), the same way as from a byte array.
+     */
+    public static void groupVarintDecode(ByteBuffer in, int[] out, int outOffset, int count) {
+        int pos = in.position();
+        int limit = in.limit();
+        boolean bigEndian = in.order() == ByteOrder.BIG_ENDIAN;
+        for (int group = 0; group < count; group += 4) {
+            int selector = in.get(pos++) & 0xFF;
+            int groupSize = Math.min(4, count - group);
+            for (int i = 0; i < 4; i++) {
+                int numLength = GROUP_VARINT_LENGTHS[4 * selector + i];
+                int num;
+                // Unless the number is at the end of the buffer, it is read as a whole int and masked to its length
+                if (pos + Integer.BYTES <= limit) {
+                    num = in.getInt(pos);
+                    num = (bigEndian ? Integer.reverseBytes(num) : num) & GROUP_VARINT_MASKS[numLength];
+                } else {
+                    num = 0;
+                    for (int b = 0; b < numLength; b++) {
+                        num |= (in.get(pos + b) & 0xFF) << (8 * b);
+                    }
+                }
+                if (i < groupSize) {
+                    out[outOffset + group + i] = num;
+                }
+                pos += numLength;
+            }
+        }
+        in.position(pos);
+    }
+
+    /**
+     * @return the largest number of bytes groupVarintEncode() can take for count numbers.
+     */
+    public static int groupVarintMaxLength(int count) {
+        return (count + 3) / 4 * GROUP_VARINT_MAX_LENGTH;
     }
-}
 
+    /**
+     * @return the number of bytes of the group that starts with the given selector byte, including the selector.
+     */
+    public static int groupVarintGroupLength(byte selector) {
+        return GROUP_VARINT_GROUP_LENGTHS[selector & 0xFF];
+    }
+}
@@ -0,0 +1,32 @@
+package webdata;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the numbers of a block with Group-Varint-Encoding (see Encoding.groupVarintEncode()): groups of 4 numbers
+ * with a selector byte holding their byte lengths. Takes about as much space as VByteCodec, but is decoded without a
+ * branch per byte.
+ */
+public class GroupVarintCodec extends BlockPostingsCodec {
+    // Used by the writers only, which write a single list at a time (see BlockPostingsCodec.writer())
+    private final byte[] buffer = new byte[Encoding.groupVarintMaxLength(BLOCK_SIZE) + Integer.BYTES];
+
+    @Override
+    public int getId() {
+        return GROUP_VARINT;
+    }
+
+    @Override
+    protected void encodeBlock(int[] values, int n, DataOutputStream out) throws IOException {
+        int length = Encoding.groupVarintEncode(values, 0, n, buffer, 0);
+        out.write(buffer, 0, length);
+    }
+
+    @Override
+    protected void decodeBlock(ByteBuffer in, int[] values, int n) {
+        // Decoded directly from the list, so iterators on different threads can share the codec
+        Encoding.groupVarintDecode(in, values, 0, n);
+    }
+}
@@ -0,0 +1,167 @@
+package webdata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The binary container format of the index files (product_index, review_index and token_index).
+ * A file is made of a header followed by a list of sections, all numbers are big-endian:
+ * <pre>
+ *   int magic | int format version | int file type | int number of sections
+ *   for every section: int section id | long payload length | int CRC32 of the payload | payload bytes
+ * </pre>
+ * The content of the sections is defined by the index class that owns the file type. Sections typically hold a
+ * single primitive array, so they can be loaded into memory with one bulk read.
+ */
+public class IndexFile {
+    public static final int MAGIC = 0x57444958;  // "WDIX"
+    public static final int FORMAT_VERSION = 5;
+
+    // File types
+    public static final int TOKENS_INDEX = 1;
+    public static final int PRODUCT_INDEX = 2;
+    public static final int REVIEW_INDEX = 3;
+
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    private static final int SECTION_HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    /**
+     * An index that can be saved as an index file.
+     */
+    public interface Content {
+        int getFileType();
+
+        /**
+         * Write all the data of the index as sections of the given writer.
+         */
+        void writeSections(Writer writer) throws IOException;
+    }
+
+    /**
+     * Collects the sections of a file in memory, and writes them with the file header.
+     */
+    public static class Writer {
+        private final Map<Integer, ByteArrayOutputStream> sections = new LinkedHashMap<>();
+
+        /**
+         * Start a new section with the given id.
+         * @return a stream the payload of the section should be written to.
+         */
+        public DataOutputStream addSection(int id) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            sections.put(id, payload);
+            return new DataOutputStream(payload);
+        }
+
+        private void write(String path, int fileType) throws IOException {
+            try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(fileType).putInt(sections.size());
+                writeFully(channel, header.flip());
+                for (Map.Entry<Integer, ByteArrayOutputStream> section : sections.entrySet()) {
+                    byte[] payload = section.getValue().toByteArray();
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    ByteBuffer sectionHeader = ByteBuffer.allocate(SECTION_HEADER_SIZE);
+                    sectionHeader.putInt(section.getKey()).putLong(payload.length).putInt((int) crc.getValue());
+                    writeFully(channel, sectionHeader.flip());
+                    writeFully(channel, ByteBuffer.wrap(payload));
+                }
+            }
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private final Map<Integer, ByteBuffer> sections;
+
+    private IndexFile(Map<Integer, ByteBuffer> sections) {
+        this.sections = sections;
+    }
+
+    /**
+     * Save the given index to a file in the given path.
+     */
+    public static void save(String path, Content content) throws IOException {
+        Writer writer = new Writer();
+        content.writeSections(writer);
+        writer.write(path, content.getFileType());
+    }
+
+    /**
+     * Map the file in the given path to memory, and check its header and the checksums of all its sections.
+     * @param fileType the type the file is expected to be.
+     */
+    public static IndexFile open(String path, int fileType) throws IOException {
+        ByteBuffer file;
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (file.remaining() < HEADER_SIZE || file.getInt() != MAGIC) {
+            throw new IOException(path + " is not an index file");
+        }
+        int version = file.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException(path + " has format version " + version + ", expected " + FORMAT_VERSION);
+        }
+        int type = file.getInt();
+        if (type != fileType) {
+            throw new IOException(path + " has file type " + type + ", expected " + fileType);
+        }
+        int numSections = file.getInt();
+        Map<Integer, ByteBuffer> sections = new HashMap<>();
+        for (int i = 0; i < numSections; i++) {
+            if (file.remaining() < SECTION_HEADER_SIZE) {
+                throw new IOException(path + " is truncated");
+            }
+            int id = file.getInt();
+            long length = file.getLong();
+            int checksum = file.getInt();
+            if (length > file.remaining()) {
+                throw new IOException(path + " is truncated");
+            }
+            ByteBuffer payload = file.slice();
+            payload.limit((int) length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch in section " + id + " of " + path);
+            }
+            sections.put(id, payload);
+            file.position(file.position() + (int) length);
+        }
+        return new IndexFile(sections);
+    }
+
+    /**
+     * @return true if the file has a section with the given id.
+     */
+    public boolean hasSection(int id) {
+        return sections.containsKey(id);
+    }
+
+    /**
+     * @return the payload of the section with the given id, positioned at its start.
+     */
+    public ByteBuffer getSection(int id) throws IOException {
+        ByteBuffer section = sections.get(id);
+        if (section == null) {
+            throw new IOException("Missing section " + id + " in the index file");
+        }
+        return section.duplicate();
+    }
+}
@@ -1,20 +1,31 @@
 package webdata;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class IndexReader {
+public class IndexReader implements Closeable {
 	private static final String PRODUCT_INDEX_FILE = "product_index.txt";
 	private static final String REVIEW_INDEX_FILE = "review_index.txt";
 	private static final String TOKEN_INDEX_FILE = "token_index.txt";
 	private static final String TOKEN_INVERTED_INDEX_FILE = "token_inverted_index.txt";
+	private static final AtomicInteger NUM_MBEANS = new AtomicInteger();  // gives every registered MBean a unique name
 
 	TokensIndex tokenIndex = null;
 	ProductIndex productIndex = null;
 	ReviewIndex reviewIndex = null;
+	MappedFile invertedIndex = null;
 	String dir;
+	private volatile QueryMetrics metrics = null;  // null while metrics are disabled
+	private ObjectName metricsName = null;
 
 	/**
 	* Creates an webdata.IndexReader which will read from the given directory
@@ -24,32 +35,100 @@ public class IndexReader {
 		loadIndices(dir);
 	}
 
+	/**
+	 * Start collecting metrics of the queries of this reader (see QueryMetrics), and register them in the platform
+	 * MBean server as webdata:type=QueryMetrics,dir="...",id=n, where dir is the index directory and n is unique to
+	 * the reader. Until this is called, every method only checks that metrics are disabled.
+	 * @return the metrics of the reader.
+	 */
+	public synchronized QueryMetrics enableMetrics() {
+		if (metrics == null) {
+			QueryMetrics newMetrics = new QueryMetrics();
+			try {
+				metricsName = new ObjectName("webdata:type=QueryMetrics,dir=" + ObjectName.quote(dir) + ",id="
+						+ NUM_MBEANS.incrementAndGet());
+				ManagementFactory.getPlatformMBeanServer().registerMBean(newMetrics, metricsName);
+			} catch (JMException e) {
+				System.out.println("Error occurred while registering the query metrics MBean.");
+				e.printStackTrace();
+				metricsName = null;
+			}
+			metrics = newMetrics;
+		}
+		return metrics;
+	}
+
+	/**
+	 * Stop collecting metrics and unregister their MBean.
+	 */
+	public synchronized void disableMetrics() {
+		metrics = null;
+		if (metricsName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+			} catch (JMException e) {
+				System.out.println("Error occurred while unregistering the query metrics MBean.");
+				e.printStackTrace();
+			}
+			metricsName = null;
+		}
+	}
+
+	/**
+	 * @return the metrics of the reader, or null if they are disabled.
+	 */
+	public QueryMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the start time of a measured call, or 0 if metrics are disabled.
+	 */
+	private long startTimer() {
+		return metrics != null ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Record the latency of a call of the given operation that started at the given time.
+	 */
+	private void stopTimer(QueryMetrics.Operation operation, long start) {
+		QueryMetrics current = metrics;
+		if (current != null && start != 0) {
+			current.record(operation, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @return the index of the given (normalized) token in the token index, or -1 if it is not there.
+	 */
+	private int searchToken(String token) {
+		long start = startTimer();
+		int tokenIdx = tokenIndex.search(token);
+		stopTimer(QueryMetrics.Operation.TOKEN_SEARCH, start);
+		return tokenIdx;
+	}
+
+	/**
+	 * @return the index of the given product in the product index, or -1 if it is not there.
+	 */
+	private int searchProduct(String productId) {
+		long start = startTimer();
+		int productIdx = productIndex.search(productId);
+		stopTimer(QueryMetrics.Operation.PRODUCT_SEARCH, start);
+		return productIdx;
+	}
+
 	/**
 	 * Load the index files from the disk to the main memory.
 	 * @param dir the directory from which the files should be loaded.
 	 */
 	private void loadIndices(String dir){
-		ObjectInputStream in = null;
-		try {
-			FileInputStream fileIn = new FileInputStream(dir + "/" + TOKEN_INDEX_FILE);
-			in = new ObjectInputStream(fileIn);
-			tokenIndex = (TokensIndex) in.readObject();
-			in.close();
-			fileIn.close();
-
-			fileIn = new FileInputStream(dir + "/" + PRODUCT_INDEX_FILE);
-			in = new ObjectInputStream(fileIn);
-			productIndex = (ProductIndex) in.readObject();
-			in.close();
-			fileIn.close();
-
-			fileIn = new FileInputStream(dir + "/" + REVIEW_INDEX_FILE);
-			in = new ObjectInputStream(fileIn);
-			reviewIndex = (ReviewIndex) in.readObject();
-			in.close();
-			fileIn.close();
-
-		} catch (IOException | ClassNotFoundException e) {
+		try {
+			tokenIndex = TokensIndex.load(dir + "/" + TOKEN_INDEX_FILE);
+			productIndex = ProductIndex.load(dir + "/" + PRODUCT_INDEX_FILE);
+			reviewIndex = ReviewIndex.load(dir + "/" + REVIEW_INDEX_FILE);
+			invertedIndex = new MappedFile(dir + "/" + TOKEN_INVERTED_INDEX_FILE);
+		} catch (IOException e) {
 			System.out.println("Error occurred while loading an index file.");
 			e.printStackTrace();
 			System.exit(1);
@@ -61,8 +140,13 @@ public class IndexReader {
 	* Returns null if there is no review with the given identifier
 	*/
 	public String getProductId(int reviewId) {
-		if (!reviewIndex.isReviewIdValid(reviewId - 1)) { return null;}
-		return productIndex.getWordAt(reviewIndex.getProductNum(reviewId - 1));
+		long start = startTimer();
+		try {
+			if (!reviewIndex.isReviewIdValid(reviewId - 1)) { return null;}
+			return productIndex.getWordAt(reviewIndex.getProductNum(reviewId - 1));
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_PRODUCT_ID, start);
+		}
 	}
 
 	/**
@@ -70,8 +154,13 @@ public class IndexReader {
 	* Returns -1 if there is no review with the given identifier
 	*/
 	public int getReviewScore(int reviewId) {
-		if (!reviewIndex.isReviewIdValid(reviewId - 1)) { return -1;}
-		return reviewIndex.getScore(reviewId - 1);
+		long start = startTimer();
+		try {
+			if (!reviewIndex.isReviewIdValid(reviewId - 1)) { return -1;}
+			return reviewIndex.getScore(reviewId - 1);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_REVIEW_SCORE, start);
+		}
 	}
 
 	/**
@@ -79,8 +168,13 @@ public class IndexReader {
 	* Returns -1 if there is no review with the given identifier
 	*/
 	public int getReviewHelpfulnessNumerator(int reviewId) {
-		if (!reviewIndex.isReviewIdValid(reviewId-1)) { return -1;}
-		return reviewIndex.getHelpfulnessNumerator(reviewId-1);
+		long start = startTimer();
+		try {
+			if (!reviewIndex.isReviewIdValid(reviewId-1)) { return -1;}
+			return reviewIndex.getHelpfulnessNumerator(reviewId-1);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_REVIEW_HELPFULNESS_NUMERATOR, start);
+		}
 	}
 
 	/**
@@ -88,8 +182,13 @@ public class IndexReader {
 	* Returns -1 if there is no review with the given identifier
 	*/
 	public int getReviewHelpfulnessDenominator(int reviewId) {
-		if (!reviewIndex.isReviewIdValid(reviewId - 1)) { return -1;}
-		return reviewIndex.getHelpfulnessDenominator(reviewId - 1);
+		long start = startTimer();
+		try {
+			if (!reviewIndex.isReviewIdValid(reviewId - 1)) { return -1;}
+			return reviewIndex.getHelpfulnessDenominator(reviewId - 1);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_REVIEW_HELPFULNESS_DENOMINATOR, start);
+		}
 	}
 
 	/**
@@ -97,8 +196,13 @@ public class IndexReader {
 	* Returns -1 if there is no review with the given identifier
 	*/
 	public int getReviewLength(int reviewId) {
-		if (!reviewIndex.isReviewIdValid(reviewId - 1)) { return -1;}
-		return reviewIndex.getLength(reviewId - 1);
+		long start = startTimer();
+		try {
+			if (!reviewIndex.isReviewIdValid(reviewId - 1)) { return -1;}
+			return reviewIndex.getLength(reviewId - 1);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_REVIEW_LENGTH, start);
+		}
 	}
 
 	/**
@@ -106,26 +210,76 @@ public class IndexReader {
 	* Returns 0 if there are no reviews containing this token
 	*/
 	public int getTokenFrequency(String token) {
-		token = token.toLowerCase();
-		int currentTokenIdx = tokenIndex.search(token);
-		if (currentTokenIdx == -1){
-			return 0;
+		long start = startTimer();
+		try {
+			token = Tokenizer.normalize(token);
+			int currentTokenIdx = searchToken(token);
+			if (currentTokenIdx == -1){
+				return 0;
+			}
+			return tokenIndex.getFrequency(currentTokenIdx);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_TOKEN_FREQUENCY, start);
 		}
-		return tokenIndex.get(currentTokenIdx).getFrequency();
 	}
 
 	/**
 	* Return the number of times that a given token (i.e., word) appears in
 	* the reviews indexed
 	* Returns 0 if there are no reviews containing this token
+	* Throws ArithmeticException if the number does not fit in an int (see getTokenCollectionFrequencyLong())
 	*/
 	public int getTokenCollectionFrequency(String token) {
-		token = token.toLowerCase();
-		int currentTokenIdx = tokenIndex.search(token);
+		long start = startTimer();
+		try {
+			return Math.toIntExact(findCollectionFrequency(token));
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_TOKEN_COLLECTION_FREQUENCY, start);
+		}
+	}
+
+	/**
+	 * Return the number of times that a given token appears in the reviews indexed, as a long, since a common token
+	 * can appear more than Integer.MAX_VALUE times in a large collection
+	 * Returns 0 if there are no reviews containing this token
+	 */
+	public long getTokenCollectionFrequencyLong(String token) {
+		long start = startTimer();
+		try {
+			return findCollectionFrequency(token);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_TOKEN_COLLECTION_FREQUENCY_LONG, start);
+		}
+	}
+
+	/**
+	 * @return the collection frequency of the given token, or 0 if it is not in the index.
+	 */
+	private long findCollectionFrequency(String token) {
+		token = Tokenizer.normalize(token);
+		int currentTokenIdx = searchToken(token);
 		if (currentTokenIdx == -1) {
 			return 0;
 		}
-		return tokenIndex.get(currentTokenIdx).getCollectionFrequency();
+		return tokenIndex.getCollectionFrequency(currentTokenIdx);
+	}
+
+	/**
+	 * Return the largest number of times that a given token appears in a single review
+	 * Returns 0 if there are no reviews containing this token
+	 */
+	public int getTokenMaxFrequency(String token) {
+		long start = startTimer();
+		try {
+			token = Tokenizer.normalize(token);
+			int currentTokenIdx = searchToken(token);
+			if (currentTokenIdx == -1) {
+				return 0;
+			}
+			return tokenIndex.getMaxFrequency(currentTokenIdx);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_TOKEN_MAX_FREQUENCY, start);
+		}
 	}
 
 	/**
@@ -138,50 +292,299 @@ public class IndexReader {
 	* Returns an empty Enumeration if there are no reviews containing this token
 	*/
 	public Enumeration<Integer> getReviewsWithToken(String token) {
-		Enumeration<Integer> enumerator = Collections.emptyEnumeration();
-		token = token.toLowerCase();
-		int currentTokenIdx = tokenIndex.search(token);
+		long start = startTimer();
+		try {
+			PostingsIterator postings = findPostings(token);
+			return new Enumeration<Integer>() {
+				private boolean loaded = false;  // true if the iterator is already positioned on the next review to return
+				private boolean freqNext = false;  // true if the next element is the frequency of the current review
+
+				@Override
+				public boolean hasMoreElements() {
+					if (freqNext) {
+						return true;
+					}
+					if (!loaded) {
+						postings.nextDoc();
+						loaded = true;
+					}
+					return postings.docId() != PostingsIterator.NO_MORE_DOCS;
+				}
+
+				@Override
+				public Integer nextElement() {
+					if (!hasMoreElements()) {
+						throw new NoSuchElementException();
+					}
+					if (freqNext) {
+						freqNext = false;
+						loaded = false;
+						return postings.freq();
+					}
+					freqNext = true;
+					return postings.docId();
+				}
+			};
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_REVIEWS_WITH_TOKEN, start);
+		}
+	}
+
+	/**
+	 * Return an iterator over the reviews containing the given token and the number of times the token appears in
+	 * each of them. The postings are decoded lazily from the inverted index.
+	 * Returns an empty iterator if there are no reviews containing this token
+	 */
+	public PostingsIterator getPostings(String token) {
+		long start = startTimer();
+		try {
+			return findPostings(token);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_POSTINGS, start);
+		}
+	}
+
+	/**
+	 * Return an iterator over the postings of the given token, or an empty iterator if it is not in the index.
+	 * Not timed, so the public methods that use it are each recorded under their own operation only.
+	 */
+	private PostingsIterator findPostings(String token) {
+		token = Tokenizer.normalize(token);
+		int currentTokenIdx = searchToken(token);
 		if (currentTokenIdx == -1){
-			return enumerator;
+			return tokenIndex.getCodec().iterator(ByteBuffer.allocate(0), 0);
 		}
-		int tokenInvertedIdxPtr = tokenIndex.get(currentTokenIdx).getInvertedIdxPtr();
-		int numReviews = tokenIndex.get(currentTokenIdx).getFrequency() * 2;
-		byte[] dest = null;
-		int nextInvertedIdxPtr;
+		return getPostings(currentTokenIdx);
+	}
+
+	/**
+	 * Return an iterator over the postings of the token at the given index.
+	 */
+	private PostingsIterator getPostings(int tokenIdx) {
+		int numReviews = tokenIndex.getFrequency(tokenIdx);
+		ByteBuffer invertedList = getInvertedList(tokenIdx);
+		PostingsIterator postings = tokenIndex.getCodec().iterator(invertedList, numReviews);
+		QueryMetrics current = metrics;
+		if (current == null) {
+			return postings;
+		}
+		current.addBytesRead(invertedList.remaining());
+		return current.countPostings(postings);
+	}
+
+	/**
+	 * Return the tokens that start with the given prefix, sorted. The tokens are read from the dictionary only when
+	 * they are requested.
+	 */
+	public Enumeration<String> getTokensWithPrefix(String prefix) {
+		long start = startTimer();
+		try {
+			return toEnumeration(tokenIndex.termsWithPrefix(Tokenizer.normalize(prefix)));
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_TOKENS_WITH_PREFIX, start);
+		}
+	}
+
+	/**
+	 * Return the tokens that are not smaller than lower and smaller than upper, sorted. A null bound leaves that end
+	 * of the range open. The tokens are read from the dictionary only when they are requested.
+	 */
+	public Enumeration<String> getTokensBetween(String lower, String upper) {
+		long start = startTimer();
+		try {
+			lower = lower == null ? null : Tokenizer.normalize(lower);
+			upper = upper == null ? null : Tokenizer.normalize(upper);
+			return toEnumeration(tokenIndex.termsBetween(lower, upper));
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_TOKENS_BETWEEN, start);
+		}
+	}
+
+	/**
+	 * Return an iterator over the reviews containing at least one token that starts with the given prefix. The
+	 * frequency of a review is the total number of times these tokens appear in it.
+	 */
+	public PostingsIterator getPostingsWithPrefix(String prefix) {
+		long start = startTimer();
+		try {
+			prefix = Tokenizer.normalize(prefix);
+			return getMatchingPostings(tokenIndex.termsWithPrefix(prefix), null);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_POSTINGS_WITH_PREFIX, start);
+		}
+	}
+
+	/**
+	 * Return an iterator over the reviews containing at least one token that matches the given pattern, where '*'
+	 * matches any sequence of characters. Only the tokens that start with the part of the pattern before the first
+	 * '*' are checked, so patterns should not start with '*'.
+	 * The frequency of a review is the total number of times the matching tokens appear in it.
+	 */
+	public PostingsIterator getPostingsForWildcard(String pattern) {
+		long start = startTimer();
 		try {
-			RandomAccessFile file = new RandomAccessFile(this.dir + "/" + TOKEN_INVERTED_INDEX_FILE, "r");
-			if (currentTokenIdx + 1 <tokenIndex.get().size()) {
-				nextInvertedIdxPtr = tokenIndex.get(currentTokenIdx + 1).getInvertedIdxPtr();
+			pattern = Tokenizer.normalize(pattern);
+			int star = pattern.indexOf('*');
+			TokensIndex.TermsEnum terms = tokenIndex.termsWithPrefix(star == -1 ? pattern : pattern.substring(0, star));
+			return getMatchingPostings(terms, pattern);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_POSTINGS_FOR_WILDCARD, start);
+		}
+	}
+
+	/**
+	 * Return the union of the postings of the given tokens that match the given wildcard pattern, or of all the given
+	 * tokens if the pattern is null.
+	 */
+	private PostingsIterator getMatchingPostings(TokensIndex.TermsEnum terms, String pattern) {
+		boolean exact = pattern != null && pattern.indexOf('*') == -1;
+		List<PostingsIterator> postings = new ArrayList<>();
+		while (terms.next()) {
+			if (pattern == null || (exact ? terms.term().equals(pattern) : matchesWildcard(terms.term(), pattern))) {
+				postings.add(getPostings(terms.index()));
+			}
+		}
+		return new DisjunctionIterator(postings);
+	}
+
+	/**
+	 * Check if the given token matches the given pattern, where '*' matches any sequence of characters.
+	 */
+	private static boolean matchesWildcard(String token, String pattern) {
+		int t = 0;
+		int p = 0;
+		int lastStar = -1;  // the position of the last '*' in the pattern
+		int lastMatch = 0;  // the position in the token that the last '*' matched up to
+		while (t < token.length()) {
+			if (p < pattern.length() && pattern.charAt(p) == '*') {
+				lastStar = p++;
+				lastMatch = t;
+			} else if (p < pattern.length() && pattern.charAt(p) == token.charAt(t)) {
+				p++;
+				t++;
+			} else if (lastStar != -1) {
+				p = lastStar + 1;  // let the last '*' match one more character
+				t = ++lastMatch;
 			} else {
-				nextInvertedIdxPtr = (int) file.length();
+				return false;
 			}
-			int bytesToRead = nextInvertedIdxPtr - tokenInvertedIdxPtr;
-			dest  = new byte[bytesToRead];
-			file.seek(tokenInvertedIdxPtr);
-			file.read(dest);
-		} catch (IOException e){
-			System.out.println("Error occurred while accessing the tokens_inverted_index file.");
-			e.printStackTrace();
-			System.exit(1);
 		}
-		ArrayList<Integer> vals = new ArrayList<Integer>(Encoding.deltaDecode(dest).subList(0, numReviews));
-		Encoding.diffToIds(vals);
+		while (p < pattern.length() && pattern.charAt(p) == '*') {
+			p++;
+		}
+		return p == pattern.length();
+	}
 
-		return Collections.enumeration(vals);
+	private static Enumeration<String> toEnumeration(TokensIndex.TermsEnum terms) {
+		return new Enumeration<String>() {
+			private boolean loaded = false;  // true if the enumerator is already positioned on the next token
+			private boolean hasNext;
+
+			@Override
+			public boolean hasMoreElements() {
+				if (!loaded) {
+					hasNext = terms.next();
+					loaded = true;
+				}
+				return hasNext;
+			}
+
+			@Override
+			public String nextElement() {
+				if (!hasMoreElements()) {
+					throw new NoSuchElementException();
+				}
+				loaded = false;
+				return terms.term();
+			}
+		};
+	}
+
+	/**
+	 * Return the bytes of the inverted index of the token at the given index, as a view of the mapped inverted index
+	 * file. The inverted index of a token ends where the inverted index of the next token begins.
+	 */
+	private ByteBuffer getInvertedList(int tokenIdx) {
+		long start = tokenIndex.getInvertedIdxPtr(tokenIdx);
+		long end;
+		if (tokenIdx + 1 < tokenIndex.size()) {
+			end = tokenIndex.getInvertedIdxPtr(tokenIdx + 1);
+		} else {
+			end = invertedIndex.length();
+		}
+		return invertedIndex.slice(start, Math.toIntExact(end - start));
+	}
+
+	/**
+	 * Returns the quality score of the given product, computed from its reviews when the index was created
+	 * Returns -1 if there is no product with the given identifier
+	 */
+	public float getProductQuality(String productId) {
+		long start = startTimer();
+		try {
+			int productIdx = searchProduct(productId);
+			if (productIdx == -1){
+				return -1;
+			}
+			return productIndex.getQuality(productIdx);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_PRODUCT_QUALITY, start);
+		}
+	}
+
+	/**
+	 * Returns the weight of the given review among the reviews of its product, by its length and helpfulness
+	 * Returns -1 if there is no review with the given identifier
+	 */
+	public double getReviewWeight(int reviewId) {
+		long start = startTimer();
+		try {
+			if (!reviewIndex.isReviewIdValid(reviewId - 1)) { return -1;}
+			return productIndex.getReviewWeight(reviewIndex.getProductNum(reviewId - 1),
+					reviewIndex.getHelpfulnessNumerator(reviewId - 1), reviewIndex.getLength(reviewId - 1));
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_REVIEW_WEIGHT, start);
+		}
 	}
 
 	/**
 	* Return the number of product reviews available in the system
 	*/
 	public int getNumberOfReviews() {
-		return reviewIndex.getNumReview();
+		long start = startTimer();
+		try {
+			return reviewIndex.getNumReview();
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_NUMBER_OF_REVIEWS, start);
+		}
 	}
 
 	/**
 	* Return the number of number of tokens in the system
 	* (Tokens should be counted as many times as they appear)
+	* Throws ArithmeticException if the number does not fit in an int (see getTokenSizeOfReviewsLong())
 	*/
-	public int getTokenSizeOfReviews() {return tokenIndex.getNumTokens();}
+	public int getTokenSizeOfReviews() {
+		long start = startTimer();
+		try {
+			return Math.toIntExact(tokenIndex.getNumTokens());
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_TOKEN_SIZE_OF_REVIEWS, start);
+		}
+	}
+
+	/**
+	 * Return the number of tokens in the system as a long, since a large collection can have more than
+	 * Integer.MAX_VALUE tokens
+	 */
+	public long getTokenSizeOfReviewsLong() {
+		long start = startTimer();
+		try {
+			return tokenIndex.getNumTokens();
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_TOKEN_SIZE_OF_REVIEWS_LONG, start);
+		}
+	}
 	
 	/**
 	* Return the ids of the reviews for a given product identifier
@@ -190,17 +593,37 @@ public class IndexReader {
 	* Returns an empty Enumeration if there are no reviews for this product
 	*/
 	public Enumeration<Integer> getProductReviews(String productId) {
-		Enumeration<Integer> enumerator = Collections.emptyEnumeration();
-		int productIdx = productIndex.search(productId);
-		if (productIdx == -1){
-			return enumerator;
+		long start = startTimer();
+		try {
+			Enumeration<Integer> enumerator = Collections.emptyEnumeration();
+			int productIdx = searchProduct(productId);
+			if (productIdx == -1){
+				return enumerator;
+			}
+			int firstReview = productIndex.getReviewId(productIdx);
+			int reviewSpan = productIndex.getReviewSpan(productIdx);
+			ArrayList<Integer> reviews = new ArrayList<>();
+			for (int i = 0; i <= reviewSpan; i++){
+				reviews.add(firstReview + i);
+			}
+			return Collections.enumeration(reviews);
+		} finally {
+			stopTimer(QueryMetrics.Operation.GET_PRODUCT_REVIEWS, start);
 		}
-		int firstReview = productIndex.getReviewId(productIdx);
-		int reviewSpan = productIndex.getReviewSpan(productIdx);
-		ArrayList<Integer> reviews = new ArrayList<>();
-		for (int i = 0; i <= reviewSpan; i++){
-			reviews.add(firstReview + i);
+	}
+
+	/**
+	 * Release the mapped inverted index file and unregister the metrics MBean. The reader cannot be used after it was
+	 * closed.
+	 */
+	@Override
+	public void close() {
+		disableMetrics();
+		try {
+			invertedIndex.close();
+		} catch (IOException e) {
+			System.out.println("Error occurred while closing the tokens_inverted_index file.");
+			e.printStackTrace();
 		}
-		return Collections.enumeration(reviews);
 	}
 }
\ No newline at end of file
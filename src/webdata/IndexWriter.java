@@ -0,0 +1,717 @@
+package webdata;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Index writer for review collections that do not fit in the main memory.
+ * The (termId, reviewId, tf) postings of the tokens are collected in a buffer of a bounded size. Whenever the buffer is
+ * full, it is sorted by token and spilled to a temporary run file. After all reviews were read, the sorted runs are
+ * merged (k-way merge) directly into the token index and the tokens inverted index: the postings of every token are
+ * streamed from the runs into the encoder of its posting list, so no posting list is held in memory. If there are
+ * more than MAX_MERGE_RUNS runs, groups of consecutive runs are first merged into larger runs, in as many passes as
+ * needed, so that a bounded number of run files is open at a time. The resulting index has exactly the same structure
+ * as the one created by SlowIndexWriter.
+ * With more than one thread (see setNumThreads()), the runs are created by worker threads, each with a tokens
+ * dictionary of its own, from chunks of consecutive reviews.
+ */
+public class IndexWriter extends BaseIndexWriter {
+	public static final long DEFAULT_MEMORY_BUDGET = 128L * 1024 * 1024;  // bytes used for the postings buffer
+
+	private static final String RUN_FILE_PREFIX = "run_";
+	private static final String RUN_FILE_SUFFIX = ".tmp";
+	private static final int POSTING_SIZE = 3 * Integer.BYTES;  // termId, reviewId, tf
+	private static final int INITIAL_RUN_CAPACITY = 1024;  // in postings, the run buffer grows up to runCapacity
+	private static final int END_OF_RUN = -1;
+	private static final int MIN_CHARS_PER_POSTING = 2;  // a token and the separator after it take at least 2 chars
+	// The part of the run buffer of a worker that a chunk is expected to fill, so that a chunk with a few more
+	// postings than expected still fits in a single run.
+	private static final double CHUNK_FILL = 0.9;
+	private static final int MAX_MERGE_RUNS = 64;  // the largest number of runs that are merged (and open) at once
+
+	private final int runCapacity;  // the largest number of postings in a run
+
+	// Tokens dictionary: every token gets an id by the order of its first appearance in the dictionaries of the
+	// run builders, which are merged into it once all reviews were read.
+	private TermDictionary terms;
+	private RunBuilder[] builders;  // a single builder, or one for every worker thread
+	private List<Run> runs;  // all runs, ordered by their reviews
+	private long tokenizedChars;  // the size of the chunks of the parallel build that were tokenized so far
+	private long tokenizedPostings;
+
+	public IndexWriter() {
+		this(DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * @param memoryBudget the number of bytes that can be used for buffering postings before they are spilled to disk.
+	 */
+	public IndexWriter(long memoryBudget) {
+		runCapacity = (int) Math.max(1, Math.min(memoryBudget / POSTING_SIZE, Integer.MAX_VALUE - 8));
+	}
+
+	/**
+	 * Given product review data, creates an on disk index
+	 * inputFile is the path to the file containing the review data
+	 */
+	public void write(String inputFile, String dir) {
+		startBuild(dir);
+		try {
+			metrics.startPhase("readReviews");
+			readReviews(inputFile);
+			writeProductAndReviewIndices();
+			metrics.startPhase("createTokenIndex");
+			createTokenIndex();
+		} finally {
+			metrics.startPhase("removeRuns");
+			removeRuns();
+		}
+		finishMetrics();
+	}
+
+	/**
+	 * Read all reviews in the input file, collect their information and spill the token postings to sorted runs.
+	 */
+	private void readReviews(String inputFile) {
+		builders = new RunBuilder[numThreads];
+		for (int w = 0; w < numThreads; w++) {
+			builders[w] = new RunBuilder(Math.max(1, runCapacity / numThreads));
+		}
+
+		if (numThreads > 1) {
+			readReviewsParallel(inputFile);
+		} else {
+			RunBuilder builder = builders[0];
+			try (DataParser dataParser = new DataParser(inputFile)) {
+				for (int i = 0; dataParser.hasNext(); i++) {
+					HashMap<String, String> review = dataParser.next();
+					addReview(review, i + 1, builder.addReviewText(review.get("text"), i + 1));
+				}
+			} catch (IOException e) {
+				System.out.println("Error occurred while reading the reviews input file.");
+				System.exit(1);
+			}
+			builder.spillRun();
+		}
+		mergeDictionaries();
+		runs = new ArrayList<>();
+		for (RunBuilder builder : builders) {
+			runs.addAll(builder.runs);
+		}
+		runs.sort(Comparator.comparingInt((Run run) -> run.chunk).thenComparingInt(run -> run.part));
+		countReviews();
+		metrics.setCounter(BuildMetrics.RUNS, runs.size());
+	}
+
+	/**
+	 * Read the reviews like readReviews(), with the reviews parsed and the runs created by numThreads worker threads.
+	 * The calling thread reads the reviews, collects them into chunks and passes every chunk to the next worker, and
+	 * adds the products and fields of every chunk once it was parsed, in the order of the chunks. The number of chars
+	 * in a chunk is chosen so that its postings would fill CHUNK_FILL of the run buffer of a worker, by the number of
+	 * chars per posting in the chunks that were already tokenized. A chunk with more postings is spilled as more than
+	 * one run. At most numThreads chunks are kept in memory at a time, besides the one being collected.
+	 */
+	private void readReviewsParallel(String inputFile) {
+		ExecutorService[] threads = new ExecutorService[numThreads];
+		for (int w = 0; w < numThreads; w++) {
+			threads[w] = Executors.newSingleThreadExecutor();
+		}
+		ArrayDeque<ReviewChunk> pending = new ArrayDeque<>();
+		tokenizedChars = 0;
+		tokenizedPostings = 0;
+		try (DataParser dataParser = new DataParser(inputFile)) {
+			ReviewChunk chunk = new ReviewChunk(0, 0);
+			long chunkChars = getChunkChars();
+			for (int i = 0; dataParser.hasNext(); i++) {
+				String review = dataParser.nextReview();
+				if (!chunk.reviews.isEmpty() && chunk.chars + review.length() > chunkChars) {
+					submitChunk(chunk, threads, pending);
+					chunk = new ReviewChunk(chunk.number + 1, i);
+					chunkChars = getChunkChars();
+				}
+				chunk.reviews.add(review);
+				chunk.chars += review.length();
+			}
+			if (!chunk.reviews.isEmpty()) {
+				submitChunk(chunk, threads, pending);
+			}
+			while (!pending.isEmpty()) {
+				addChunk(pending.poll());
+			}
+		} catch (IOException e) {
+			System.out.println("Error occurred while reading the reviews input file.");
+			System.exit(1);
+		} finally {
+			for (ExecutorService thread : threads) {
+				thread.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of chars of reviews that should be collected into the next chunk.
+	 */
+	private long getChunkChars() {
+		double charsPerPosting = tokenizedPostings == 0 ? MIN_CHARS_PER_POSTING :
+				Math.max(MIN_CHARS_PER_POSTING, (double) tokenizedChars / tokenizedPostings);
+		return (long) (CHUNK_FILL * builders[0].capacity * charsPerPosting);
+	}
+
+	/**
+	 * Start parsing the given chunk and creating its run by the next worker. If too many chunks are pending, add the
+	 * oldest one first.
+	 */
+	private void submitChunk(ReviewChunk chunk, ExecutorService[] threads, ArrayDeque<ReviewChunk> pending) {
+		if (pending.size() >= numThreads) {
+			addChunk(pending.poll());
+		}
+		int worker = chunk.number % numThreads;
+		chunk.result = threads[worker].submit(() -> builders[worker].addChunk(chunk));
+		pending.add(chunk);
+	}
+
+	/**
+	 * Wait for the run of the given chunk to be created, and add the products and fields of its reviews. All chunks of
+	 * earlier reviews must already be added.
+	 */
+	private void addChunk(ReviewChunk chunk) {
+		await(chunk.result);
+		for (int j = 0; j < chunk.lengths.length; j++) {
+			addReview(chunk.fields.get(j), chunk.firstReview + j + 1, chunk.lengths[j]);
+		}
+		tokenizedChars += chunk.chars;
+		tokenizedPostings += chunk.postings;
+	}
+
+	/**
+	 * Merge the tokens dictionaries of the run builders into the tokens dictionary, and map the term ids of every
+	 * builder to the merged ids. Every term of a builder is added once, and a single builder is used as is.
+	 */
+	private void mergeDictionaries() {
+		if (builders.length == 1) {
+			terms = builders[0].terms;
+			builders[0].mergedIds = null;
+			return;
+		}
+		terms = new TermDictionary();
+		for (RunBuilder builder : builders) {
+			builder.mergedIds = new int[builder.terms.size()];
+			for (int id = 0; id < builder.mergedIds.length; id++) {
+				builder.mergedIds[id] = terms.add(builder.terms.get(id));
+			}
+		}
+	}
+
+	/**
+	 * Creates the index file for the tokens in the collection by merging all the sorted runs (see mergeRuns()), after
+	 * they were reduced to at most MAX_MERGE_RUNS runs by the merge passes.
+	 */
+	private void createTokenIndex() {
+		Integer[] order = terms.sortedIds();
+		int[] termRanks = new int[order.length];
+		List<String> sortedTerms = new ArrayList<>(order.length);
+		for (int rank = 0; rank < order.length; rank++) {
+			termRanks[order[rank]] = rank;
+			sortedTerms.add(terms.get(order[rank]));
+		}
+		terms = null;
+		for (RunBuilder builder : builders) {
+			builder.setTermRanks(termRanks);
+		}
+		int passes = 1;
+		while (runs.size() > MAX_MERGE_RUNS) {
+			mergePass(passes++);
+		}
+		metrics.setCounter(BuildMetrics.MERGE_PASSES, passes);
+
+		KFront kf = new KFront(true);
+		kf.createKFront(K, sortedTerms);
+		sortedTerms = null;
+		TokensIndex tIdx = createTokensIndex();
+		tIdx.setDict(kf.getConcatBytes());
+		Iterator<List<Integer>> tokensData = kf.getTable().iterator();
+		mergeRuns(runs, new MergeOutput() {
+			@Override
+			public void startTerm(int termRank, int count) {
+				tIdx.startToken(tokensData.next(), count);
+			}
+
+			@Override
+			public void addPosting(int reviewId, int freq) {
+				tIdx.addPosting(reviewId, freq);
+			}
+
+			@Override
+			public void finishTerm() {
+				tIdx.finishToken();
+			}
+		});
+		tIdx.closeInvertedIndex();
+		saveTokenIndex(tIdx);
+	}
+
+	/**
+	 * Merge every MAX_MERGE_RUNS consecutive runs into a single run, whose term ids are the ranks of the terms, and
+	 * delete the merged runs. The merged runs are still ordered by their reviews.
+	 * @param pass the number of the merge pass, starting from 1.
+	 */
+	private void mergePass(int pass) {
+		List<Run> merged = new ArrayList<>();
+		for (int start = 0; start < runs.size(); start += MAX_MERGE_RUNS) {
+			List<Run> group = runs.subList(start, Math.min(start + MAX_MERGE_RUNS, runs.size()));
+			if (group.size() == 1) {
+				merged.add(group.get(0));
+				continue;
+			}
+			Run run = new Run(pass, merged.size());
+			try (RunWriter out = new RunWriter(run)) {
+				mergeRuns(group, out);
+			}
+			for (Run input : group) {
+				new File(input.file).delete();
+			}
+			merged.add(run);
+		}
+		runs = merged;
+	}
+
+	/**
+	 * Merge the given sorted runs into the given output (k-way merge). The groups of a token in all runs are taken
+	 * together: their sizes give the length of its posting list, and their postings are then read in run order (which
+	 * is review order) and passed one at a time to the output.
+	 */
+	private void mergeRuns(List<Run> toMerge, MergeOutput out) {
+		// Runs are ordered by their review ids, so for equal tokens the run with the lower number comes first.
+		PriorityQueue<RunReader> queue = new PriorityQueue<>((r1, r2) -> r1.termRank != r2.termRank ?
+				Integer.compare(r1.termRank, r2.termRank) : Integer.compare(r1.runNum, r2.runNum));
+		for (int i = 0; i < toMerge.size(); i++) {
+			RunReader run = new RunReader(toMerge.get(i), i);
+			if (run.nextGroup()) {
+				queue.add(run);
+			}
+		}
+
+		List<RunReader> termRuns = new ArrayList<>();  // the runs whose current group belongs to the current token
+		try {
+			while (!queue.isEmpty()) {
+				int curTerm = queue.peek().termRank;
+				int count = 0;
+				while (!queue.isEmpty() && queue.peek().termRank == curTerm) {
+					RunReader run = queue.poll();
+					count += run.count;
+					termRuns.add(run);
+				}
+				out.startTerm(curTerm, count);
+				for (RunReader run : termRuns) {
+					run.copyPostings(out);
+					if (run.nextGroup()) {
+						queue.add(run);
+					}
+				}
+				out.finishTerm();
+				termRuns.clear();
+			}
+		} finally {
+			// Close the runs that were not read to their end, if the merge failed
+			for (RunReader run : queue) {
+				run.close();
+			}
+			for (RunReader run : termRuns) {
+				run.close();
+			}
+		}
+	}
+
+	/**
+	 * Delete all the temporary run files in the directory of the index, including those of a build that failed.
+	 */
+	private void removeRuns() {
+		File[] runFiles = new File(this.dir).listFiles((d, name) ->
+				name.startsWith(RUN_FILE_PREFIX) && name.endsWith(RUN_FILE_SUFFIX));
+		if (runFiles != null) {
+			for (File file : runFiles) {
+				file.delete();
+			}
+		}
+		runs = null;
+		builders = null;
+	}
+
+	/**
+	 * Tokenizes reviews and collects their postings into sorted runs. Every builder has a tokens dictionary of its own,
+	 * and the term ids in its runs are ids of this dictionary. A builder is only used by a single thread at a time.
+	 */
+	private class RunBuilder {
+		private final int capacity;  // the largest number of postings in a run
+		private final TermDictionary terms = new TermDictionary();
+		private final Tokenizer tokenizer = new Tokenizer();
+		private int[] reviewTermIds = new int[64];  // the term ids of the review being added, reused between reviews
+		private final List<Run> runs = new ArrayList<>();
+		private int[] mergedIds;  // the id in the merged tokens dictionary of every term, null if it is the same id
+		private int[] termRanks;  // the rank of every term among all tokens, set once all reviews were read
+
+		// Postings of the current run, stored as parallel arrays.
+		private int[] runTermIds;
+		private int[] runReviewIds;
+		private int[] runFreqs;
+		private int runSize;
+		private long numPostings;  // the number of postings added to all runs of the builder
+		private int chunk;  // the chunk of the current run, and the number of runs spilled from the chunk so far
+		private int part;
+
+		private RunBuilder(int capacity) {
+			this.capacity = capacity;
+			int initialCapacity = Math.min(INITIAL_RUN_CAPACITY, capacity);
+			runTermIds = new int[initialCapacity];
+			runReviewIds = new int[initialCapacity];
+			runFreqs = new int[initialCapacity];
+		}
+
+		/**
+		 * Parse the reviews of the given chunk, add their texts, and spill them as the run (or runs) of the chunk.
+		 */
+		private void addChunk(ReviewChunk reviews) {
+			chunk = reviews.number;
+			part = 0;
+			long startPostings = numPostings;
+			reviews.fields = new ArrayList<>(reviews.reviews.size());
+			reviews.lengths = new int[reviews.reviews.size()];
+			for (int j = 0; j < reviews.lengths.length; j++) {
+				HashMap<String, String> review = DataParser.parseReview(reviews.reviews.get(j));
+				reviews.lengths[j] = addReviewText(review.remove("text"), reviews.firstReview + j + 1);
+				reviews.fields.add(review);
+			}
+			reviews.postings = numPostings - startPostings;
+			reviews.reviews.clear();
+			spillRun();
+		}
+
+		/**
+		 * Split the given text of the i-th review into tokens and add their postings to the current run.
+		 * @param reviewText the text of the review that should be added.
+		 * @param reviewIndex the number of the given review.
+		 * @return the number of tokens in the given review text.
+		 */
+		private int addReviewText(String reviewText, int reviewIndex) {
+			tokenizer.reset(reviewText);
+			int length = 0;
+			while (tokenizer.next()){
+				if (length == reviewTermIds.length) {
+					reviewTermIds = Arrays.copyOf(reviewTermIds, 2 * length);
+				}
+				reviewTermIds[length++] = terms.add(tokenizer.buffer(), tokenizer.start(), tokenizer.end());
+			}
+			// Sort the ids of the review's tokens, so that all appearances of a token are adjacent and can be counted.
+			int[] ids = reviewTermIds;
+			Arrays.sort(ids, 0, length);
+			int i = 0;
+			while (i < length) {
+				int j = i;
+				while (j < length && ids[j] == ids[i]) {
+					j++;
+				}
+				addPosting(ids[i], reviewIndex, j - i);
+				i = j;
+			}
+			return length;
+		}
+
+		/**
+		 * Add a single posting to the current run. The run buffer grows as needed up to capacity postings, and when
+		 * it is full the run is spilled to the disk first.
+		 */
+		private void addPosting(int termId, int reviewId, int freq) {
+			if (runSize == runTermIds.length) {
+				if (runSize == capacity) {
+					spillRun();
+				} else {
+					int newCapacity = (int) Math.min(2L * runSize, capacity);
+					runTermIds = Arrays.copyOf(runTermIds, newCapacity);
+					runReviewIds = Arrays.copyOf(runReviewIds, newCapacity);
+					runFreqs = Arrays.copyOf(runFreqs, newCapacity);
+				}
+			}
+			runTermIds[runSize] = termId;
+			runReviewIds[runSize] = reviewId;
+			runFreqs[runSize] = freq;
+			runSize++;
+			numPostings++;
+		}
+
+		/**
+		 * Sort the postings of the current run by token (and by review id within every token) and write them to a
+		 * new run file. A run file is a list of groups, each group is: termId, number of postings, reviewId-1, tf-1,
+		 * reviewId-2... The groups are ordered by the lexicographic order of the tokens and the file ends with
+		 * END_OF_RUN.
+		 */
+		private void spillRun() {
+			if (runSize == 0) {
+				return;
+			}
+			// Find the tokens of the run and sort them
+			int[] positions = new int[terms.size()];
+			ArrayList<Integer> runTerms = new ArrayList<>();
+			for (int i = 0; i < runSize; i++) {
+				if (positions[runTermIds[i]]++ == 0) {
+					runTerms.add(runTermIds[i]);
+				}
+			}
+			runTerms.sort(Comparator.comparing(terms::get));
+
+			// Counting sort of the postings by the token order. Postings are added by review order, so the sort keeps
+			// the review ids of every token sorted.
+			int start = 0;
+			for (int termId : runTerms) {
+				int count = positions[termId];
+				positions[termId] = start;
+				start += count;
+			}
+			int[] sorted = new int[runSize];
+			for (int i = 0; i < runSize; i++) {
+				sorted[positions[runTermIds[i]]++] = i;
+			}
+
+			Run run = new Run(this, chunk, part++);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run.file)))) {
+				int i = 0;
+				while (i < runSize) {
+					int termId = runTermIds[sorted[i]];
+					int j = i;
+					while (j < runSize && runTermIds[sorted[j]] == termId) {
+						j++;
+					}
+					out.writeInt(termId);
+					out.writeInt(j - i);
+					for (; i < j; i++) {
+						out.writeInt(runReviewIds[sorted[i]]);
+						out.writeInt(runFreqs[sorted[i]]);
+					}
+				}
+				out.writeInt(END_OF_RUN);
+			} catch (IOException e) {
+				System.out.println("Error occurred while writing the run file: " + run.file);
+				e.printStackTrace();
+				System.exit(1);
+			}
+			runs.add(run);
+			runSize = 0;
+		}
+
+		/**
+		 * Set the ranks of the terms of the builder, and release the memory that was used for creating the runs.
+		 * @param mergedRanks the rank of every term of the merged tokens dictionary.
+		 */
+		private void setTermRanks(int[] mergedRanks) {
+			if (mergedIds == null) {
+				termRanks = mergedRanks;
+			} else {
+				termRanks = new int[mergedIds.length];
+				for (int id = 0; id < mergedIds.length; id++) {
+					termRanks[id] = mergedRanks[mergedIds[id]];
+				}
+				mergedIds = null;
+			}
+			runTermIds = null;
+			runReviewIds = null;
+			runFreqs = null;
+			reviewTermIds = null;
+		}
+	}
+
+	/**
+	 * A run file. Runs are ordered by the chunk of reviews they were created from, and by the order they were spilled
+	 * within the chunk, which is the order of their reviews.
+	 */
+	private class Run {
+		private final RunBuilder builder;  // null for a run of a merge pass, whose term ids are the ranks of the terms
+		private final int chunk;
+		private final int part;
+		private final String file;
+
+		private Run(RunBuilder builder, int chunk, int part) {
+			this.builder = builder;
+			this.chunk = chunk;
+			this.part = part;
+			this.file = dir + "/" + RUN_FILE_PREFIX + chunk + "_" + part + RUN_FILE_SUFFIX;
+		}
+
+		/**
+		 * A run of the given merge pass, which is the given number in the order of the runs of the pass.
+		 */
+		private Run(int pass, int number) {
+			this.builder = null;
+			this.chunk = number;
+			this.part = 0;
+			this.file = dir + "/" + RUN_FILE_PREFIX + "merge" + pass + "_" + number + RUN_FILE_SUFFIX;
+		}
+	}
+
+	/**
+	 * The target of a merge of runs: the tokens are passed by their order, each with the number of its postings,
+	 * followed by its postings in review order.
+	 */
+	private interface MergeOutput {
+		void startTerm(int termRank, int count);
+
+		void addPosting(int reviewId, int freq);
+
+		void finishTerm();
+	}
+
+	/**
+	 * Writes the output of a merge pass to a run file, in the format of the runs of the builders (see spillRun()),
+	 * with the ranks of the terms as their ids.
+	 */
+	private static class RunWriter implements MergeOutput, AutoCloseable {
+		private final String file;
+		private final DataOutputStream out;
+
+		private RunWriter(Run run) {
+			file = run.file;
+			DataOutputStream output = null;
+			try {
+				output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			} catch (FileNotFoundException e) {
+				fail(e);
+			}
+			out = output;
+		}
+
+		@Override
+		public void startTerm(int termRank, int count) {
+			try {
+				out.writeInt(termRank);
+				out.writeInt(count);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		@Override
+		public void addPosting(int reviewId, int freq) {
+			try {
+				out.writeInt(reviewId);
+				out.writeInt(freq);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		@Override
+		public void finishTerm() {
+		}
+
+		@Override
+		public void close() {
+			try {
+				out.writeInt(END_OF_RUN);
+				out.close();
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		private void fail(IOException e) {
+			System.out.println("Error occurred while writing the run file: " + file);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Consecutive reviews that are parsed by a worker of the parallel build, which also creates their run.
+	 */
+	private static class ReviewChunk {
+		private final int number;
+		private final int firstReview;  // the index of the first review in the chunk, starting from 0
+		private final ArrayList<String> reviews = new ArrayList<>();  // the unparsed reviews, as read by the DataParser
+		private ArrayList<HashMap<String, String>> fields;  // the parsed fields of every review, except for its text
+		private long chars;  // the number of chars in the reviews of the chunk
+		private long postings;  // the number of postings of the chunk, once it was tokenized
+		private int[] lengths;  // the number of tokens in every review of the chunk
+		private Future<?> result;
+
+		private ReviewChunk(int number, int firstReview) {
+			this.number = number;
+			this.firstReview = firstReview;
+		}
+	}
+
+	/**
+	 * Sequential reader of a single run file, that reads the run group by group.
+	 */
+	private class RunReader {
+		private final Run run;
+		private final int runNum;  // the position of the run in the order of all runs
+		private final DataInputStream in;
+		private int termRank;
+		private int count;
+
+		private RunReader(Run run, int runNum) {
+			this.run = run;
+			this.runNum = runNum;
+			DataInputStream input = null;
+			try {
+				input = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file)));
+			} catch (FileNotFoundException e) {
+				System.out.println("Error occurred while opening the run file: " + run.file);
+				e.printStackTrace();
+				System.exit(1);
+			}
+			in = input;
+		}
+
+		/**
+		 * Read the header of the next group in the run.
+		 * @return false if the run has no more groups (the run is closed in this case).
+		 */
+		private boolean nextGroup() {
+			try {
+				int termId = in.readInt();
+				if (termId == END_OF_RUN) {
+					in.close();
+					return false;
+				}
+				termRank = run.builder == null ? termId : run.builder.termRanks[termId];
+				count = in.readInt();
+			} catch (IOException e) {
+				System.out.println("Error occurred while reading the run file: " + run.file);
+				e.printStackTrace();
+				System.exit(1);
+			}
+			return true;
+		}
+
+		/**
+		 * Close the run file. A run is also closed once all its groups were read.
+		 */
+		private void close() {
+			try {
+				in.close();
+			} catch (IOException e) {
+				System.out.println("Error occurred while closing the run file: " + run.file);
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+
+		/**
+		 * Add the reviewId-tf pairs of the current group to the token that is being merged into the given output.
+		 */
+		private void copyPostings(MergeOutput out) {
+			try {
+				for (int i = 0; i < count; i++) {
+					int reviewId = in.readInt();
+					out.addPosting(reviewId, in.readInt());
+				}
+			} catch (IOException e) {
+				System.out.println("Error occurred while reading the run file: " + run.file);
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package webdata;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints. Values are kept in a single int array, so large lists do not pay for a boxed
+ * Integer per entry. The class also implements List<Integer> so it can be passed wherever the indices expect a list.
+ */
+public class IntList extends AbstractList<Integer> {
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+        size = 0;
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Append the values of the given list between from (inclusive) and to (exclusive) to the end of this list.
+     */
+    public void addAll(IntList other, int from, int to) {
+        int n = to - from;
+        if (size + n > values.length) {
+            values = Arrays.copyOf(values, Math.max(size + n, 2 * values.length));
+        }
+        System.arraycopy(other.values, from, values, size, n);
+        size += n;
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        add(value.intValue());
+        return true;
+    }
+
+    public int getInt(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    public void setInt(int index, int value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        values[index] = value;
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    @Override
+    public Integer set(int index, Integer value) {
+        int prev = getInt(index);
+        values[index] = value;
+        return prev;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return a copy of the values in the list, trimmed to its size.
+     */
+    public int[] toIntArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -1,37 +1,40 @@
 package webdata;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 /**
- * Class for creating a (k-1) in k Front Coding dictionary.
+ * Class for creating a (k-1) in k Front Coding dictionary. The strings are concatenated as UTF-8 bytes, and all
+ * pointers, prefix sizes and lengths are counted in bytes.
  */
 public class KFront {
     private List<List<Integer>> table;
-    private String concatString;
+    private byte[] concatBytes;
     private boolean saveLength;
 
     public KFront() {
         table = new LinkedList<>();
-        concatString = null;
+        concatBytes = null;
         saveLength = false;
     }
 
     public KFront(List<List<Integer>> outputTable) {
         table = outputTable;
-        concatString = null;
+        concatBytes = null;
         saveLength = false;
     }
 
     public KFront(boolean saveLength) {
         table = new LinkedList<>();
-        concatString = null;
+        concatBytes = null;
         this.saveLength = saveLength;
     }
 
-    public String getConcatString() {
-        return concatString;
+    public byte[] getConcatBytes() {
+        return concatBytes;
     }
 
     public List<List<Integer>> getTable() {
@@ -39,24 +42,24 @@ public class KFront {
     }
 
     /**
-     * Create an encoded string representation of the given strings, using (k-1)-in-k front coding, according to the
-     * given k.
+     * Create an encoded representation of the given strings, using (k-1)-in-k front coding, according to the given k.
      */
     public void createKFront(int k, List<String> strings) {
-        StringBuilder sBuilder = new StringBuilder();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
         int offset = 0;
-        String prevString = null;
-        for (String str : strings) {
+        byte[] prevString = null;
+        for (String s : strings) {
+            byte[] str = s.getBytes(StandardCharsets.UTF_8);
             ArrayList<Integer> entry = new ArrayList<>();  // Table entries: 0-pointer, 1-prefix size, 2-string length(Optional)
             if (offset == 0) {
-                entry.add(sBuilder.length());  // Pointer to string
+                entry.add(bytes.size());  // Pointer to string
                 entry.add(null);  // Prefix size
-                sBuilder.append(str);
+                bytes.write(str, 0, str.length);
             } else {
-                String commonPref = findCommonPrefix(str, prevString);
+                int commonPref = findCommonPrefix(str, prevString);
                 entry.add(null);  // Pointer to string
-                entry.add(commonPref.length());  // Prefix size
-                sBuilder.append(str.substring(commonPref.length()));
+                entry.add(commonPref);  // Prefix size
+                bytes.write(str, commonPref, str.length - commonPref);
             }
             prevString = str;
             offset++;
@@ -65,23 +68,21 @@ public class KFront {
                 prevString = null;
             }
             if (this.saveLength){
-                entry.add(str.length());  // Save the Str length
+                entry.add(str.length);  // Save the Str length
             }
             table.add(entry);
         }
-        concatString = sBuilder.toString();
+        concatBytes = bytes.toByteArray();
     }
 
     /**
-     * Find the largest common prefix of the two given strings.
+     * Find the length of the largest common prefix of the two given byte strings.
      */
-    private String findCommonPrefix(String s1, String s2){
-        StringBuilder commonPrefix = new StringBuilder();
+    private int findCommonPrefix(byte[] s1, byte[] s2){
         int i = 0;
-        while (i < s1.length() && i < s2.length() && s1.charAt(i) == s2.charAt(i)){
-            commonPrefix.append(s1.charAt(i));
+        while (i < s1.length && i < s2.length && s1[i] == s2[i]){
             i++;
         }
-        return commonPrefix.toString();
+        return i;
     }
 }
@@ -0,0 +1,84 @@
+package webdata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read only file which is mapped to memory once, and then accessed through slices of the mapped buffers.
+ * A single MappedByteBuffer is limited to 2GB, so the file is mapped in chunks of CHUNK_SIZE bytes.
+ */
+public class MappedFile implements Closeable {
+    public static final long CHUNK_SIZE = 1L << 30;
+
+    private FileChannel channel;
+    private MappedByteBuffer[] chunks;
+    private final long length;
+
+    public MappedFile(String path) throws IOException {
+        channel = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+        length = channel.size();
+        chunks = new MappedByteBuffer[(int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = i * CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, length - start));
+        }
+    }
+
+    /**
+     * @return the length of the file in bytes.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Return a buffer holding the given range of the file. If the range is inside a single chunk, the returned buffer
+     * is a view of the mapped memory (no bytes are copied). Ranges that cross a chunk boundary are copied.
+     */
+    public ByteBuffer slice(long offset, int size) {
+        if (offset < 0 || size < 0 || offset + size > length) {
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + size + " is out of the file bounds");
+        }
+        if (size == 0) {
+            return ByteBuffer.allocate(0);
+        }
+        int chunk = (int) (offset / CHUNK_SIZE);
+        int start = (int) (offset % CHUNK_SIZE);
+        if (start + size <= chunks[chunk].capacity()) {
+            return slice(chunks[chunk], start, size);
+        }
+        ByteBuffer copy = ByteBuffer.allocate(size);
+        while (copy.hasRemaining()) {
+            int toCopy = Math.min(copy.remaining(), chunks[chunk].capacity() - start);
+            copy.put(slice(chunks[chunk], start, toCopy));
+            chunk++;
+            start = 0;
+        }
+        copy.flip();
+        return copy;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int start, int size) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(start);
+        view.limit(start + size);
+        return view.slice();
+    }
+
+    /**
+     * Close the file. The mapped memory is released once the buffers are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        chunks = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
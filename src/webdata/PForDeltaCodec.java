@@ -0,0 +1,105 @@
+package webdata;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the numbers of a block with patched frame of reference (PForDelta): the low b bits of every number are
+ * bit-packed, and the few numbers that do not fit in b bits are saved as exceptions after the packed bits, as the
+ * index of the number and its remaining high bits. The width b is chosen per block to minimize its size, so a few
+ * large gaps do not widen all the others.
+ * A block is saved as a byte holding b, a byte holding the number of exceptions, ceil(n*b/8) bytes of packed bits
+ * (least significant bits first), and then the exceptions: a byte index and a varint of the high bits.
+ */
+public class PForDeltaCodec extends BlockPostingsCodec {
+    private static final int MAX_BITS = 31;  // the values are non-negative ints
+
+    private final int[] exceptionCounts = new int[MAX_BITS + 1];
+    private final int[] exceptionBytes = new int[MAX_BITS + 1];
+
+    @Override
+    public int getId() {
+        return PFOR_DELTA;
+    }
+
+    @Override
+    protected void encodeBlock(int[] values, int n, DataOutputStream out) throws IOException {
+        int bits = chooseBits(values, n);
+        int numExceptions = exceptionCounts[bits];
+        out.writeByte(bits);
+        out.writeByte(numExceptions);
+        long buffer = 0;
+        int bufferBits = 0;
+        int mask = (int) ((1L << bits) - 1);
+        for (int i = 0; i < n; i++) {
+            buffer |= (long) (values[i] & mask) << bufferBits;
+            bufferBits += bits;
+            while (bufferBits >= Byte.SIZE) {
+                out.writeByte((int) buffer);
+                buffer >>>= Byte.SIZE;
+                bufferBits -= Byte.SIZE;
+            }
+        }
+        if (bufferBits > 0) {
+            out.writeByte((int) buffer);
+        }
+        for (int i = 0; i < n && numExceptions > 0; i++) {
+            if (values[i] >>> bits != 0) {
+                out.writeByte(i);
+                Encoding.writeVarint(out, values[i] >>> bits);
+            }
+        }
+    }
+
+    @Override
+    protected void decodeBlock(ByteBuffer in, int[] values, int n) {
+        int bits = in.get();
+        int numExceptions = in.get() & 0xFF;
+        long buffer = 0;
+        int bufferBits = 0;
+        int mask = (int) ((1L << bits) - 1);
+        for (int i = 0; i < n; i++) {
+            while (bufferBits < bits) {
+                buffer |= (long) (in.get() & 0xFF) << bufferBits;
+                bufferBits += Byte.SIZE;
+            }
+            values[i] = (int) buffer & mask;
+            buffer >>>= bits;
+            bufferBits -= bits;
+        }
+        for (int i = 0; i < numExceptions; i++) {
+            int index = in.get() & 0xFF;
+            values[index] |= (int) Encoding.readVarint(in) << bits;
+        }
+    }
+
+    /**
+     * @return the width in bits that gives the smallest encoding of the block. Also fills exceptionCounts with the
+     * number of exceptions for every width.
+     */
+    private int chooseBits(int[] values, int n) {
+        for (int bits = 0; bits <= MAX_BITS; bits++) {
+            exceptionCounts[bits] = 0;
+            exceptionBytes[bits] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            int valueBits = Integer.SIZE - Integer.numberOfLeadingZeros(values[i]);
+            for (int bits = 0; bits < valueBits; bits++) {
+                int highBits = valueBits - bits;
+                exceptionCounts[bits]++;
+                exceptionBytes[bits] += 1 + (highBits + 6) / 7;  // the index and the varint of the high bits
+            }
+        }
+        int bestBits = MAX_BITS;
+        long bestSize = Long.MAX_VALUE;
+        for (int bits = 0; bits <= MAX_BITS; bits++) {
+            long size = ((long) n * bits + Byte.SIZE - 1) / Byte.SIZE + exceptionBytes[bits];
+            if (size < bestSize) {
+                bestSize = size;
+                bestBits = bits;
+            }
+        }
+        return bestBits;
+    }
+}
@@ -0,0 +1,131 @@
+package webdata;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable array of non-negative ints, where every value is stored with the same number of bits: the number of
+ * bits needed for the largest value in the array. The values are packed one after the other into an array of longs,
+ * so a value may span two longs. When a value that does not fit is added, the whole array is repacked with the wider
+ * width, which happens at most 31 times.
+ */
+public class PackedIntArray {
+    private static final int INITIAL_CAPACITY = 16;  // in longs
+
+    private long[] blocks;
+    private int bitsPerValue;
+    private int size;
+
+    public PackedIntArray() {
+        blocks = new long[INITIAL_CAPACITY];
+        bitsPerValue = 0;
+        size = 0;
+    }
+
+    private PackedIntArray(long[] blocks, int bitsPerValue, int size) {
+        this.blocks = blocks;
+        this.bitsPerValue = bitsPerValue;
+        this.size = size;
+    }
+
+    /**
+     * Append the given value to the end of the array.
+     */
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Only non-negative values can be packed: " + value);
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(value);
+        if (bits > bitsPerValue) {
+            repack(bits);
+        }
+        long bitLength = (long) (size + 1) * bitsPerValue;
+        if (bitLength > (long) blocks.length * Long.SIZE) {
+            blocks = Arrays.copyOf(blocks, (int) Math.max(2L * blocks.length, (bitLength + Long.SIZE - 1) / Long.SIZE));
+        }
+        set(size++, value);
+    }
+
+    /**
+     * @return the value at the given index.
+     */
+    public int get(int index) {
+        if (bitsPerValue == 0) {
+            return 0;
+        }
+        long bitIndex = (long) index * bitsPerValue;
+        int block = (int) (bitIndex >>> 6);
+        int offset = (int) (bitIndex & 63);
+        long value = blocks[block] >>> offset;
+        if (offset + bitsPerValue > Long.SIZE) {
+            value |= blocks[block + 1] << (Long.SIZE - offset);
+        }
+        return (int) (value & ((1L << bitsPerValue) - 1));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getBitsPerValue() {
+        return bitsPerValue;
+    }
+
+    /**
+     * Write the value at the given index, which must fit in bitsPerValue bits, over a zeroed slot.
+     */
+    private void set(int index, int value) {
+        if (bitsPerValue == 0) {
+            return;
+        }
+        long bitIndex = (long) index * bitsPerValue;
+        int block = (int) (bitIndex >>> 6);
+        int offset = (int) (bitIndex & 63);
+        blocks[block] |= (long) value << offset;
+        if (offset + bitsPerValue > Long.SIZE) {
+            blocks[block + 1] |= (long) value >>> (Long.SIZE - offset);
+        }
+    }
+
+    /**
+     * Copy all values to a new array of blocks, where every value takes the given number of bits.
+     */
+    private void repack(int bits) {
+        PackedIntArray wider = new PackedIntArray(new long[numBlocks(size, bits) + INITIAL_CAPACITY], bits, size);
+        for (int i = 0; i < size; i++) {
+            wider.set(i, get(i));
+        }
+        blocks = wider.blocks;
+        bitsPerValue = bits;
+    }
+
+    private static int numBlocks(int size, int bitsPerValue) {
+        return (int) (((long) size * bitsPerValue + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /**
+     * Write the array to the given stream: the number of values, the number of bits per value, and the longs that
+     * hold the values.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(bitsPerValue);
+        int numBlocks = numBlocks(size, bitsPerValue);
+        for (int i = 0; i < numBlocks; i++) {
+            out.writeLong(blocks[i]);
+        }
+    }
+
+    /**
+     * Read an array that was written by write().
+     */
+    public static PackedIntArray read(ByteBuffer in) {
+        int size = in.getInt();
+        int bitsPerValue = in.getInt();
+        long[] blocks = new long[numBlocks(size, bitsPerValue)];
+        in.asLongBuffer().get(blocks);
+        return new PackedIntArray(blocks, bitsPerValue, size);
+    }
+}
@@ -0,0 +1,83 @@
+package webdata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The compression format of the posting lists in the tokens inverted index. The codec of an index is chosen when the
+ * index is created, and its id is saved in the header of the token index so the reader decodes the lists with the same
+ * codec.
+ */
+public interface PostingsCodec {
+    int ELIAS_DELTA = 0;
+    int VBYTE = 1;
+    int SIMPLE_8B = 2;
+    int PFOR_DELTA = 3;
+    int GROUP_VARINT = 4;
+    long MAX_LIST_BYTES = Integer.MAX_VALUE;  // a list is read as a single ByteBuffer
+
+    /**
+     * @return the id of the codec, saved in the index header.
+     */
+    int getId();
+
+    /**
+     * Start encoding the posting list of a single token into the given output. The postings are passed to the returned
+     * writer one at a time, so the memory used does not depend on the length of the list.
+     * @param count the number of postings in the list.
+     */
+    PostingsWriter writer(PostingsOutput out, int count) throws IOException;
+
+    /**
+     * Encode the posting list of a single token and write it to the given output.
+     * @param reviewIds the review ids of the postings, sorted in increasing order.
+     * @param freqs the number of times the token appears in each of the reviews.
+     * @param count the number of postings.
+     * @return the number of bytes of skip data that were written, as part of the list.
+     */
+    default long encode(int[] reviewIds, int[] freqs, int count, PostingsOutput out) throws IOException {
+        PostingsWriter writer = writer(out, count);
+        for (int i = 0; i < count; i++) {
+            writer.add(reviewIds[i], freqs[i]);
+        }
+        return writer.finish();
+    }
+
+    /**
+     * @return an iterator over the posting list encoded in the given bytes.
+     * @param count the number of postings in the list.
+     */
+    PostingsIterator iterator(ByteBuffer list, int count);
+
+    /**
+     * Check that an encoded list of the given size, including its skip entries, can be read back.
+     * @throws IllegalArgumentException if the list is larger than MAX_LIST_BYTES.
+     */
+    static void checkListSize(long bytes) {
+        if (bytes > MAX_LIST_BYTES) {
+            throw new IllegalArgumentException("Posting list of " + bytes + " bytes is larger than the limit of "
+                    + MAX_LIST_BYTES + " bytes");
+        }
+    }
+
+    /**
+     * Create the codec with the given id.
+     * @param skipInterval the number of postings between skip entries, for codecs that do not use fixed size blocks.
+     */
+    static PostingsCodec forId(int id, int skipInterval) {
+        switch (id) {
+            case ELIAS_DELTA:
+                return new EliasDeltaCodec(skipInterval);
+            case VBYTE:
+                return new VByteCodec();
+            case SIMPLE_8B:
+                return new Simple8bCodec();
+            case PFOR_DELTA:
+                return new PForDeltaCodec();
+            case GROUP_VARINT:
+                return new GroupVarintCodec();
+            default:
+                throw new IllegalArgumentException("Unknown postings codec: " + id);
+        }
+    }
+}
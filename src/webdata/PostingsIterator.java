@@ -0,0 +1,41 @@
+package webdata;
+
+/**
+ * Iterator over a posting list, i.e. the ids of the reviews containing a token (sorted by id) together with the
+ * number of times the token appears in each of them. The postings are decoded one at a time, only when requested.
+ */
+public interface PostingsIterator {
+    /**
+     * Returned by nextDoc() and advance() after the last posting.
+     */
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * @return the current review id, -1 if nextDoc() was not called yet, or NO_MORE_DOCS if the iterator is exhausted.
+     */
+    int docId();
+
+    /**
+     * Move to the next posting.
+     * @return the next review id, or NO_MORE_DOCS if there are no more postings.
+     */
+    int nextDoc();
+
+    /**
+     * Move to the first posting whose review id is greater than or equal to the target.
+     * Should only be called with a target larger than the current review id.
+     * @return the review id of that posting, or NO_MORE_DOCS if there is no such posting.
+     */
+    int advance(int target);
+
+    /**
+     * @return the number of times the token appears in the current review.
+     */
+    int freq();
+
+    /**
+     * @return the number of postings of the list, or an upper bound of the number of reviews an iterator that combines
+     * lists can return. Used to order lists from the cheapest to the most expensive without decoding them.
+     */
+    int cost();
+}
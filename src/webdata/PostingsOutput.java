@@ -0,0 +1,177 @@
+package webdata;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The output the posting lists are encoded into. Bytes are collected in a buffer, which is written to the file
+ * whenever it is full, so a list of any length is written with a bounded amount of memory. Since the skip entries of a
+ * list come before its postings but are only known once the postings are encoded, a range can be reserved with
+ * reserve() and filled later, even if it was already written to the file.
+ * Without a file, all bytes are kept in memory, and can be read with toByteArray().
+ */
+public class PostingsOutput extends OutputStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] ZEROS = new byte[4096];
+
+    private final RandomAccessFile file;  // null if the output is kept in memory
+    private final long start;  // the offset in the file of the first byte of the output
+    private byte[] buffer;
+    private int buffered;
+    private long flushed;  // the number of bytes that were moved from the buffer to the file
+
+    /**
+     * Create an output that writes to the given file, from its current file pointer.
+     */
+    public PostingsOutput(RandomAccessFile file) throws IOException {
+        this.file = file;
+        this.start = file.getFilePointer();
+        this.buffer = new byte[BUFFER_SIZE];
+        this.buffered = 0;
+        this.flushed = 0;
+    }
+
+    /**
+     * Create an output that is kept in memory.
+     */
+    public PostingsOutput() {
+        this.file = null;
+        this.start = 0;
+        this.buffer = new byte[256];
+        this.buffered = 0;
+        this.flushed = 0;
+    }
+
+    /**
+     * @return the number of bytes that were written so far.
+     */
+    public long position() {
+        return flushed + buffered;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (buffered == buffer.length) {
+            makeRoom();
+        }
+        buffer[buffered++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (buffered == buffer.length) {
+                makeRoom();
+            }
+            int n = Math.min(length, buffer.length - buffered);
+            System.arraycopy(bytes, offset, buffer, buffered, n);
+            buffered += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Skip over the given number of bytes, which are filled through the returned range.
+     */
+    public Range reserve(long length) throws IOException {
+        Range range = new Range(position(), length);
+        for (long left = length; left > 0; left -= ZEROS.length) {
+            write(ZEROS, 0, (int) Math.min(left, ZEROS.length));
+        }
+        return range;
+    }
+
+    /**
+     * Overwrite bytes that were already written, starting at the given position.
+     */
+    private void writeAt(long position, byte[] bytes, int offset, int length) throws IOException {
+        if (position < flushed) {
+            int n = (int) Math.min(length, flushed - position);
+            file.seek(start + position);
+            file.write(bytes, offset, n);
+            file.seek(start + flushed);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+        if (length > 0) {
+            System.arraycopy(bytes, offset, buffer, (int) (position - flushed), length);
+        }
+    }
+
+    /**
+     * Write the buffered bytes to the file. Does nothing if the output is kept in memory.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (file != null) {
+            file.write(buffer, 0, buffered);
+            flushed += buffered;
+            buffered = 0;
+        }
+    }
+
+    /**
+     * @return the bytes that were written, if the output is kept in memory.
+     */
+    public byte[] toByteArray() {
+        if (file != null) {
+            throw new IllegalStateException("The output is written to a file");
+        }
+        return Arrays.copyOf(buffer, buffered);
+    }
+
+    private void makeRoom() throws IOException {
+        if (file != null) {
+            flush();
+        } else {
+            buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+        }
+    }
+
+    /**
+     * A range of the output that was reserved by reserve(), and is filled from its start with writeInt() and
+     * writeLong(). The values are collected in a small buffer that is copied to the output whenever it is full.
+     */
+    public class Range {
+        private final long end;
+        private long position;  // the position in the output of the next value that is not buffered
+        private final ByteBuffer values;
+
+        private Range(long position, long length) {
+            this.position = position;
+            this.end = position + length;
+            this.values = ByteBuffer.allocate((int) Math.min(length, 4096));
+        }
+
+        public void writeInt(int value) throws IOException {
+            if (values.remaining() < Integer.BYTES) {
+                flush();
+            }
+            values.putInt(value);
+        }
+
+        public void writeLong(long value) throws IOException {
+            if (values.remaining() < Long.BYTES) {
+                flush();
+            }
+            values.putLong(value);
+        }
+
+        /**
+         * Copy the buffered values to the output.
+         */
+        public void flush() throws IOException {
+            if (position + values.position() > end) {
+                throw new IllegalStateException("Wrote past the end of the reserved range");
+            }
+            writeAt(position, values.array(), 0, values.position());
+            position += values.position();
+            values.clear();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package webdata;
+
+import java.io.IOException;
+
+/**
+ * Encodes a single posting list that is given one posting at a time, so the list does not have to be held in memory.
+ * Created by PostingsCodec.writer() for a known number of postings.
+ */
+public interface PostingsWriter {
+    /**
+     * Add the next posting of the list. Review ids must be added in increasing order.
+     * @param freq the number of times the token appears in the review.
+     */
+    void add(int reviewId, int freq) throws IOException;
+
+    /**
+     * Write the rest of the list, once all of its postings were added.
+     * @return the number of bytes of skip data that were written, as part of the list.
+     */
+    long finish() throws IOException;
+}
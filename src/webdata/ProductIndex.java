@@ -1,31 +1,13 @@
 package webdata;
 
 import java.io.*;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 
 
-public class ProductIndex implements Serializable {
-
-    private class ProductInfo  implements Serializable{
-        private short stringInfo; // This is either a pointer to the concatenated string, or a prefix size.
-        private int reviewId;
-        private short spanLength;
-
-        private void readObject(ObjectInputStream inputFile) throws ClassNotFoundException, IOException
-        {
-            stringInfo = inputFile.readShort();
-            reviewId = inputFile.readInt();
-            spanLength = inputFile.readShort();
-        }
-
-        private void writeObject(ObjectOutputStream outputFile) throws IOException
-        {
-            outputFile.writeShort(stringInfo);
-            outputFile.writeInt(reviewId);
-            outputFile.writeShort(spanLength);
-        }
-    }
+public class ProductIndex implements IndexFile.Content {
 
     // Indices of data in the input array
     public static int POINTER_INDEX = 0;
@@ -34,34 +16,62 @@ public class ProductIndex implements Serializable {
     public static int SPANLENGTH_INDEX = 3;
     public static int WORD_LENGTH = 10;
 
-    private ArrayList<ProductInfo> data;
-    private String dictString;
+    // Sections of the index file
+    private static final int HEADER_SECTION = 0;
+    private static final int DICTIONARY_SECTION = 1;
+    private static final int STRING_INFO_SECTION = 2;
+    private static final int REVIEW_ID_SECTION = 3;
+    private static final int SPAN_LENGTH_SECTION = 4;
+    private static final int QUALITY_SECTION = 5;
+    private static final int MAX_LENGTH_SECTION = 6;
+    private static final int MAX_HELPFDNOM_SECTION = 7;
+
+    private int size;  // the number of products in the dictionary
+    // The fields of the products, one array per field (see TokensIndex)
+    private int[] stringInfo;  // This is either a pointer to the concatenated string, or a prefix size.
+    private int[] reviewId;  // the id of the first review of the product
+    private int[] spanLength;  // the number of reviews of the product after the first one
+    private ByteBuffer dict;  // the concatenated UTF-8 bytes of all product ids, read with absolute gets
     private int k;
+    // Per product values computed from its reviews, indexed by the position of the product in the index
+    private float[] quality;
+    private int[] maxLength;  // the length of the longest review of the product
+    private int[] maxHelpfDnom;  // the largest helpfulness denominator of the reviews of the product
 
     public ProductIndex(int k) {
-        data = new ArrayList<>();
-        dictString = null;
+        allocate(0);
+        dict = null;
         this.k = k;
     }
 
     /**
-     * Insert the given data into the list of products and the given concatenated string.
+     * Allocate the arrays of the product fields with the given capacity, keeping the products that were already
+     * inserted.
+     */
+    private void allocate(int capacity) {
+        stringInfo = stringInfo == null ? new int[capacity] : Arrays.copyOf(stringInfo, capacity);
+        reviewId = reviewId == null ? new int[capacity] : Arrays.copyOf(reviewId, capacity);
+        spanLength = spanLength == null ? new int[capacity] : Arrays.copyOf(spanLength, capacity);
+    }
+
+    /**
+     * Insert the given data into the list of products and the given concatenated bytes.
      */
-    public void insertData(List<List<Integer>> inData, String concatString) {
-        dictString = concatString;
+    public void insertData(List<List<Integer>> inData, byte[] concatBytes) {
+        dict = ByteBuffer.wrap(concatBytes);
+        allocate(size + inData.size());
         int offset = 0;
-        for (List<Integer> entry : inData) {
-            ProductInfo pf = new ProductInfo();
-            pf.reviewId = entry.get(REVIEWID_INDEX);
-            pf.spanLength = entry.get(SPANLENGTH_INDEX).shortValue();
+        for (List<Integer> entry : inData) {  // the table of KFront is a linked list, so it is not indexed
+            reviewId[size] = entry.get(REVIEWID_INDEX);
+            spanLength[size] = entry.get(SPANLENGTH_INDEX);
             if (offset == 0) {
-                pf.stringInfo = entry.get(POINTER_INDEX).shortValue();
+                stringInfo[size] = entry.get(POINTER_INDEX);
             } else {
-                pf.stringInfo = entry.get(PREFIXL_INDEX).shortValue();
+                stringInfo[size] = entry.get(PREFIXL_INDEX);
             }
             offset++;
             offset = offset % k;
-            data.add(pf);
+            size++;
         }
     }
 
@@ -70,74 +80,235 @@ public class ProductIndex implements Serializable {
      */
     public String getWordAt(int index) {
         int blockStart = index - (index % k);
-        int startStringPtr = data.get(blockStart).stringInfo;
-        // Add the first word of the block
-        StringBuilder str = new StringBuilder(dictString.substring(startStringPtr, startStringPtr +  WORD_LENGTH));
-        int read = WORD_LENGTH;  // Tracks how much was read from the string
-        int offset = 0;
-        while (blockStart + offset != index) {
-            offset++;
-            int prefixLength = data.get(blockStart + offset).stringInfo;
-            str.delete(prefixLength, str.length());
-            str.append(dictString, startStringPtr + read, startStringPtr + read + WORD_LENGTH - prefixLength);
-            read += WORD_LENGTH - prefixLength;
+        int pos = stringInfo[blockStart];
+        byte[] word = new byte[WORD_LENGTH];
+        int prefixLength = 0;
+        // Every word of the block overwrites the bytes after its prefix (see TokensIndex.getWordAt())
+        for (int i = blockStart; i <= index; i++) {
+            if (i > blockStart) {
+                prefixLength = stringInfo[i];
+            }
+            for (int j = prefixLength; j < WORD_LENGTH; j++) {
+                word[j] = dict.get(pos++);
+            }
         }
-        return str.toString();
+        return new String(word, StandardCharsets.UTF_8);
     }
 
     /**
-     * Search the given string in the productIndex dictionary, using binary search.
+     * Search the given string in the productIndex dictionary. The block that may hold the string is found by a binary
+     * search over the block heads, and the block is then scanned while decoding it once (see TokensIndex.search()).
+     * @return the index of the given string, or -1 if it is not in the dictionary.
      */
     public int search(String str) {
-        int high = data.size() / k;
+        return search(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Search the given UTF-8 encoded string in the productIndex dictionary, comparing unsigned bytes.
+     * @return the index of the given string, or -1 if it is not in the dictionary.
+     */
+    public int search(byte[] str) {
         int low = 0;
-        int cur_block = high / 2;
+        int high = (size + k - 1) / k - 1;
+        if (high < 0 || compareToBlockHead(str, 0) < 0) {
+            return -1;
+        }
+        // Find the last block whose head is not larger than str
         while (low < high) {
-            int cmp = str.compareTo(getWordAt(k * cur_block));
-            if (cmp < 0) {
-                high = cur_block - 1;  // str is in a previous block
-            } else if (cmp > 0) {
-                // Checks the first word of the next block (if it exists)
-                if (k * (cur_block + 1) < data.size() && str.compareTo(getWordAt(k * (cur_block + 1))) < 0) {
-                    // str is in inside this block
-                    break;
-                }
-                low = cur_block + 1;  // str is in a higher block
+            int mid = (low + high + 1) >>> 1;
+            if (compareToBlockHead(str, mid) < 0) {
+                high = mid - 1;
             } else {
-                return k * cur_block;  //  str is the first word in this block
+                low = mid;
+            }
+        }
+        return searchBlock(str, low * k);
+    }
+
+    /**
+     * Compare the given string to the first word of the given block, by unsigned bytes.
+     */
+    private int compareToBlockHead(byte[] str, int block) {
+        int start = stringInfo[block * k];
+        int n = Math.min(WORD_LENGTH, str.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Byte.toUnsignedInt(str[i]) - Byte.toUnsignedInt(dict.get(start + i));
+            if (cmp != 0) {
+                return cmp;
             }
-            cur_block = (high + low) / 2;
         }
+        return str.length - WORD_LENGTH;
+    }
 
-        // Search the block for str
-        int blockStart = k * cur_block;
-        for (int offset = 0; offset < k && blockStart + offset < data.size(); offset++) {
-            if (getWordAt(blockStart + offset).equals(str)) {  // A bit wasteful, but..
-                return blockStart + offset;
+    /**
+     * Scan the block that starts at the given index for the given string, comparing only the characters of every word
+     * that were not compared for the previous words.
+     */
+    private int searchBlock(byte[] str, int blockStart) {
+        int pos = stringInfo[blockStart];  // the position of the current word's suffix in the dict
+        int matched = 0;  // the length of the common prefix of str and the current word
+        int prefixLength = 0;
+        for (int index = blockStart; index < blockStart + k && index < size; index++) {
+            if (index > blockStart) {
+                prefixLength = stringInfo[index];
+            }
+            if (prefixLength < matched) {
+                return -1;  // this word, and all words after it, are larger than str
+            }
+            if (prefixLength == matched) {
+                int wordStart = pos - prefixLength;  // where the word would start, had it been stored in full
+                int i = matched;
+                while (i < WORD_LENGTH && i < str.length && dict.get(wordStart + i) == str[i]) {
+                    i++;
+                }
+                matched = i;
+                if (i == WORD_LENGTH && i == str.length) {
+                    return index;
+                }
+                if (i == str.length || (i < WORD_LENGTH &&
+                        Byte.toUnsignedInt(dict.get(wordStart + i)) > Byte.toUnsignedInt(str[i]))) {
+                    return -1;  // the word is larger than str
+                }
             }
+            pos += WORD_LENGTH - prefixLength;
         }
         return -1;
     }
 
-    private void readObject(ObjectInputStream inputFile) throws ClassNotFoundException, IOException
+    /**
+     * Compute the quality score of every product from the information of its reviews, so it does not have to be
+     * computed at query time. Every review gets a weight from its length and helpfulness, both normalized by the
+     * largest value among the reviews of the same product (see getReviewWeight()). The quality of a product is the
+     * weighted average of its review scores, multiplied by log(numReviews + 1).
+     */
+    public void computeQuality(ReviewIndex reviews) {
+        quality = new float[size];
+        maxLength = new int[size];
+        maxHelpfDnom = new int[size];
+        int[] numReviews = new int[size];
+        for (int i = 0; i < reviews.getNumReview(); i++) {
+            int product = reviews.getProductNum(i);
+            maxLength[product] = Math.max(maxLength[product], reviews.getLength(i));
+            maxHelpfDnom[product] = Math.max(maxHelpfDnom[product], reviews.getHelpfulnessDenominator(i));
+            numReviews[product]++;
+        }
+
+        double[] weightedScores = new double[size];
+        double[] weights = new double[size];
+        double[] scores = new double[size];
+        for (int i = 0; i < reviews.getNumReview(); i++) {
+            int product = reviews.getProductNum(i);
+            double weight = getReviewWeight(product, reviews.getHelpfulnessNumerator(i), reviews.getLength(i));
+            weightedScores[product] += weight * reviews.getScore(i);
+            weights[product] += weight;
+            scores[product] += reviews.getScore(i);
+        }
+        for (int product = 0; product < size; product++) {
+            if (numReviews[product] == 0) {
+                continue;
+            }
+            // Products whose reviews all have a weight of 0 fall back to the simple average of the scores
+            double expectedScore = weights[product] > 0 ? weightedScores[product] / weights[product] :
+                    scores[product] / numReviews[product];
+            quality[product] = (float) (expectedScore * Math.log(numReviews[product] + 1));
+        }
+    }
+
+    /**
+     * @return the quality score of the product at the given index, as computed by computeQuality().
+     */
+    public float getQuality(int index) {
+        return quality[index];
+    }
+
+    /**
+     * Return the weight of a review of the product at the given index: the average of the review length and of the
+     * review helpfulness, normalized by the longest review and the largest helpfulness denominator of the product.
+     * Since numerator / denominator * (denominator / maxDenominator) = numerator / maxDenominator, the normalized
+     * helpfulness only needs the numerator.
+     */
+    public double getReviewWeight(int index, int helpfNum, int length) {
+        double normalizedLength = maxLength[index] > 0 ? (double) length / maxLength[index] : 0;
+        double normalizedHelpf = maxHelpfDnom[index] > 0 ? (double) helpfNum / maxHelpfDnom[index] : 0;
+        return 0.5 * normalizedLength + 0.5 * normalizedHelpf;
+    }
+
+    @Override
+    public int getFileType() {
+        return IndexFile.PRODUCT_INDEX;
+    }
+
+    /**
+     * Write the index as sections of an index file: a header with the scalar fields, the concatenated string, and a
+     * section for every per-product field, holding the values of that field for all products. The string pointers
+     * and span lengths are written with variable byte encoding.
+     */
+    @Override
+    public void writeSections(IndexFile.Writer writer) throws IOException
     {
-        k = inputFile.readInt();
-        dictString = inputFile.readUTF();
-        data = (ArrayList<ProductInfo>) inputFile.readObject();
+        DataOutputStream header = writer.addSection(HEADER_SECTION);
+        header.writeInt(k);
+        header.writeInt(size);
+        byte[] dictBytes = new byte[dict.limit()];
+        dict.duplicate().get(dictBytes);
+        writer.addSection(DICTIONARY_SECTION).write(dictBytes);
+        DataOutputStream stringInfos = writer.addSection(STRING_INFO_SECTION);
+        DataOutputStream reviewIds = writer.addSection(REVIEW_ID_SECTION);
+        DataOutputStream spanLengths = writer.addSection(SPAN_LENGTH_SECTION);
+        DataOutputStream qualities = writer.addSection(QUALITY_SECTION);
+        DataOutputStream maxLengths = writer.addSection(MAX_LENGTH_SECTION);
+        DataOutputStream maxHelpfDnoms = writer.addSection(MAX_HELPFDNOM_SECTION);
+        for (int i = 0; i < size; i++) {
+            Encoding.writeVarint(stringInfos, stringInfo[i]);
+            reviewIds.writeInt(reviewId[i]);
+            Encoding.writeVarint(spanLengths, spanLength[i]);
+            qualities.writeFloat(quality[i]);
+            maxLengths.writeInt(maxLength[i]);
+            maxHelpfDnoms.writeInt(maxHelpfDnom[i]);
+        }
     }
 
-    private void writeObject(ObjectOutputStream outputFile) throws IOException
+    /**
+     * Load a product index that was saved with IndexFile.save().
+     */
+    public static ProductIndex load(String path) throws IOException
     {
-        outputFile.writeInt(k);
-        outputFile.writeUTF(dictString);
-        outputFile.writeObject(data);
+        IndexFile file = IndexFile.open(path, IndexFile.PRODUCT_INDEX);
+        ByteBuffer header = file.getSection(HEADER_SECTION);
+        ProductIndex index = new ProductIndex(header.getInt());
+        int size = header.getInt();
+        index.size = size;
+        index.dict = file.getSection(DICTIONARY_SECTION);
+        index.allocate(size);
+        ByteBuffer stringInfos = file.getSection(STRING_INFO_SECTION);
+        ByteBuffer spanLengths = file.getSection(SPAN_LENGTH_SECTION);
+        for (int i = 0; i < size; i++) {
+            index.stringInfo[i] = (int) Encoding.readVarint(stringInfos);
+            index.spanLength[i] = (int) Encoding.readVarint(spanLengths);
+        }
+        file.getSection(REVIEW_ID_SECTION).asIntBuffer().get(index.reviewId);
+        index.quality = new float[size];
+        file.getSection(QUALITY_SECTION).asFloatBuffer().get(index.quality);
+        index.maxLength = new int[size];
+        file.getSection(MAX_LENGTH_SECTION).asIntBuffer().get(index.maxLength);
+        index.maxHelpfDnom = new int[size];
+        file.getSection(MAX_HELPFDNOM_SECTION).asIntBuffer().get(index.maxHelpfDnom);
+        return index;
+    }
+
+    /**
+     * @return the number of products in the index.
+     */
+    public int size() {
+        return size;
     }
 
     public int getReviewId(int index) {
-        return data.get(index).reviewId;
+        return reviewId[index];
     }
 
     public int getReviewSpan(int index) {
-        return data.get(index).spanLength;
+        return spanLength[index];
     }
 }
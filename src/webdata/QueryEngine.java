@@ -0,0 +1,110 @@
+package webdata;
+
+import java.util.*;
+
+/**
+ * Evaluates boolean queries (conjunctions and disjunctions of tokens) over the index, using an IndexReader.
+ * The posting lists of the query tokens are merged document at a time directly from the compressed inverted index,
+ * so no intermediate list of reviews is created.
+ */
+public class QueryEngine {
+    private final IndexReader reader;
+
+    public QueryEngine(IndexReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Return the ids of the reviews that contain all the tokens of the given query, sorted by id.
+     * Returns an empty Enumeration if there are no such reviews
+     */
+    public Enumeration<Integer> getReviewsWithAllTokens(Enumeration<String> query) {
+        return toEnumeration(and(Collections.list(query)));
+    }
+
+    /**
+     * Return the ids of the reviews that contain at least one of the tokens of the given query, sorted by id.
+     * Returns an empty Enumeration if there are no such reviews
+     */
+    public Enumeration<Integer> getReviewsWithAnyToken(Enumeration<String> query) {
+        return toEnumeration(or(Collections.list(query)));
+    }
+
+    /**
+     * Return the ids of the reviews that contain at least one token matching the given pattern, sorted by id. A '*'
+     * in the pattern matches any sequence of characters, e.g. "choc*" matches all tokens that start with "choc".
+     * Returns an empty Enumeration if there are no such reviews
+     */
+    public Enumeration<Integer> getReviewsWithWildcard(String pattern) {
+        return toEnumeration(reader.getPostingsForWildcard(pattern));
+    }
+
+    /**
+     * Return an iterator over the reviews that contain all the given tokens. The posting lists are intersected from
+     * the rarest token to the most frequent one.
+     */
+    public PostingsIterator and(Collection<String> query) {
+        List<PostingsIterator> postings = getSortedPostings(query);
+        if (!postings.isEmpty() && postings.get(0).cost() == 0) {
+            return new ConjunctionIterator(Collections.emptyList());  // a token that appears nowhere
+        }
+        return new ConjunctionIterator(postings);
+    }
+
+    /**
+     * Return an iterator over the reviews that contain at least one of the given tokens.
+     */
+    public PostingsIterator or(Collection<String> query) {
+        return new DisjunctionIterator(getSortedPostings(query));
+    }
+
+    /**
+     * Return the postings of the distinct tokens of the query, sorted by the number of reviews containing them (rarest
+     * first). Every token is looked up in the dictionary once, and its frequency is the cost of its postings. The
+     * query is tokenized like the reviews, so a query word such as "don't" is split into the tokens "don" and "t".
+     */
+    private List<PostingsIterator> getSortedPostings(Collection<String> query) {
+        LinkedHashSet<String> distinct = new LinkedHashSet<>();
+        Tokenizer tokenizer = new Tokenizer();
+        for (String word : query) {
+            tokenizer.reset(word);
+            while (tokenizer.next()) {
+                distinct.add(tokenizer.term());
+            }
+        }
+        List<PostingsIterator> postings = new ArrayList<>();
+        for (String token : distinct) {
+            postings.add(reader.getPostings(token));
+        }
+        postings.sort(Comparator.comparingInt(PostingsIterator::cost));
+        return postings;
+    }
+
+    /**
+     * Wrap the review ids of the given iterator with an Enumeration. Reviews are read from the iterator only when
+     * they are requested.
+     */
+    private static Enumeration<Integer> toEnumeration(PostingsIterator postings) {
+        return new Enumeration<Integer>() {
+            private boolean loaded = false;  // true if the iterator is already positioned on the next review
+
+            @Override
+            public boolean hasMoreElements() {
+                if (!loaded) {
+                    postings.nextDoc();
+                    loaded = true;
+                }
+                return postings.docId() != PostingsIterator.NO_MORE_DOCS;
+            }
+
+            @Override
+            public Integer nextElement() {
+                if (!hasMoreElements()) {
+                    throw new NoSuchElementException();
+                }
+                loaded = false;
+                return postings.docId();
+            }
+        };
+    }
+}
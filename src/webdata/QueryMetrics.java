@@ -0,0 +1,264 @@
+package webdata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the queries of an IndexReader: the number of calls and a latency histogram for every public method of
+ * the reader and for the dictionary searches they make, the number of bytes of the inverted index read, and the
+ * number of postings decoded. The metrics are only collected after IndexReader.enableMetrics() was called; until then
+ * the reader only checks that it has no metrics.
+ * All methods can be called from any number of threads.
+ */
+public class QueryMetrics implements QueryMetricsMXBean {
+    /**
+     * The measured operations: the public methods of IndexReader, and the searches of the token and product
+     * dictionaries.
+     */
+    public enum Operation {
+        GET_PRODUCT_ID("getProductId"),
+        GET_REVIEW_SCORE("getReviewScore"),
+        GET_REVIEW_HELPFULNESS_NUMERATOR("getReviewHelpfulnessNumerator"),
+        GET_REVIEW_HELPFULNESS_DENOMINATOR("getReviewHelpfulnessDenominator"),
+        GET_REVIEW_LENGTH("getReviewLength"),
+        GET_TOKEN_FREQUENCY("getTokenFrequency"),
+        GET_TOKEN_COLLECTION_FREQUENCY("getTokenCollectionFrequency"),
+        GET_TOKEN_COLLECTION_FREQUENCY_LONG("getTokenCollectionFrequencyLong"),
+        GET_TOKEN_MAX_FREQUENCY("getTokenMaxFrequency"),
+        GET_REVIEWS_WITH_TOKEN("getReviewsWithToken"),
+        GET_POSTINGS("getPostings"),
+        GET_TOKENS_WITH_PREFIX("getTokensWithPrefix"),
+        GET_TOKENS_BETWEEN("getTokensBetween"),
+        GET_POSTINGS_WITH_PREFIX("getPostingsWithPrefix"),
+        GET_POSTINGS_FOR_WILDCARD("getPostingsForWildcard"),
+        GET_PRODUCT_QUALITY("getProductQuality"),
+        GET_REVIEW_WEIGHT("getReviewWeight"),
+        GET_NUMBER_OF_REVIEWS("getNumberOfReviews"),
+        GET_TOKEN_SIZE_OF_REVIEWS("getTokenSizeOfReviews"),
+        GET_TOKEN_SIZE_OF_REVIEWS_LONG("getTokenSizeOfReviewsLong"),
+        GET_PRODUCT_REVIEWS("getProductReviews"),
+        TOKEN_SEARCH("tokenSearch"),
+        PRODUCT_SEARCH("productSearch");
+
+        private final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the name of the operation, as it appears in snapshots.
+         */
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final LatencyHistogram[] histograms;
+    private final LongAdder bytesRead;
+    private final LongAdder postingsDecoded;
+
+    public QueryMetrics() {
+        histograms = new LatencyHistogram[Operation.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        bytesRead = new LongAdder();
+        postingsDecoded = new LongAdder();
+    }
+
+    /**
+     * Record a single call of the given operation.
+     */
+    public void record(Operation operation, long nanos) {
+        histograms[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Count the given number of bytes as read from the inverted index.
+     */
+    public void addBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * @return an iterator that returns the postings of the given iterator, and counts them as decoded.
+     */
+    public PostingsIterator countPostings(PostingsIterator postings) {
+        return new CountingPostingsIterator(postings);
+    }
+
+    /**
+     * @return the latency histogram of the given operation.
+     */
+    public LatencyHistogram getHistogram(Operation operation) {
+        return histograms[operation.ordinal()];
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getPostingsDecoded() {
+        return postingsDecoded.sum();
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        List<OperationStats> operations = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            operations.add(new OperationStats(operation.getName(), getHistogram(operation)));
+        }
+        return new Snapshot(getBytesRead(), getPostingsDecoded(), operations);
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        bytesRead.reset();
+        postingsDecoded.reset();
+    }
+
+    /**
+     * The metrics of a reader at a single point in time.
+     */
+    public static class Snapshot {
+        private final long bytesRead;
+        private final long postingsDecoded;
+        private final List<OperationStats> operations;
+
+        private Snapshot(long bytesRead, long postingsDecoded, List<OperationStats> operations) {
+            this.bytesRead = bytesRead;
+            this.postingsDecoded = postingsDecoded;
+            this.operations = Collections.unmodifiableList(operations);
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getPostingsDecoded() {
+            return postingsDecoded;
+        }
+
+        /**
+         * @return the metrics of every operation, in the order of Operation.
+         */
+        public List<OperationStats> getOperations() {
+            return operations;
+        }
+
+        /**
+         * @return the metrics of the given operation.
+         */
+        public OperationStats operation(Operation operation) {
+            return operations.get(operation.ordinal());
+        }
+    }
+
+    /**
+     * The number of calls and the latency percentiles of a single operation, in nanoseconds.
+     */
+    public static class OperationStats {
+        private final String name;
+        private final long count;
+        private final double meanNanos;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+        private final long p999Nanos;
+        private final long maxNanos;
+
+        private OperationStats(String name, LatencyHistogram histogram) {
+            this.name = name;
+            this.count = histogram.getCount();
+            this.meanNanos = histogram.getMean();
+            this.p50Nanos = histogram.getValueAtPercentile(50);
+            this.p90Nanos = histogram.getValueAtPercentile(90);
+            this.p99Nanos = histogram.getValueAtPercentile(99);
+            this.p999Nanos = histogram.getValueAtPercentile(99.9);
+            this.maxNanos = histogram.getMax();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanNanos() {
+            return meanNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP90Nanos() {
+            return p90Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getP999Nanos() {
+            return p999Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+    }
+
+    /**
+     * Counts the postings returned by another iterator.
+     */
+    private class CountingPostingsIterator implements PostingsIterator {
+        private final PostingsIterator postings;
+
+        private CountingPostingsIterator(PostingsIterator postings) {
+            this.postings = postings;
+        }
+
+        @Override
+        public int docId() {
+            return postings.docId();
+        }
+
+        @Override
+        public int nextDoc() {
+            return count(postings.nextDoc());
+        }
+
+        @Override
+        public int advance(int target) {
+            return count(postings.advance(target));
+        }
+
+        @Override
+        public int freq() {
+            return postings.freq();
+        }
+
+        @Override
+        public int cost() {
+            return postings.cost();
+        }
+
+        private int count(int docId) {
+            if (docId != NO_MORE_DOCS) {
+                postingsDecoded.increment();
+            }
+            return docId;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package webdata;
+
+/**
+ * The management interface of QueryMetrics, registered in the platform MBean server by IndexReader.enableMetrics(),
+ * so the metrics of a reader can be read with JConsole or any other JMX client.
+ */
+public interface QueryMetricsMXBean {
+    /**
+     * @return the current metrics of all methods of the reader.
+     */
+    QueryMetrics.Snapshot getSnapshot();
+
+    /**
+     * @return the number of bytes of the inverted index that were handed to postings iterators.
+     */
+    long getBytesRead();
+
+    /**
+     * @return the number of postings returned by postings iterators.
+     */
+    long getPostingsDecoded();
+
+    /**
+     * Remove all recorded metrics.
+     */
+    void reset();
+}
@@ -1,96 +1,125 @@
 package webdata;
 
 import java.io.*;
-import java.util.ArrayList;
 import java.util.List;
 
-public class ReviewIndex implements Serializable{
-    private class ReviewInfo implements Serializable {
-        private byte[] encodedInfo;
-        private byte score;
-
-        private void readObject(ObjectInputStream inputFile) throws ClassNotFoundException, IOException
-        {
-            encodedInfo = (byte[]) inputFile.readObject();
-            score = inputFile.readByte();
-        }
-
-        private void writeObject(ObjectOutputStream outputFile) throws IOException
-        {
-            outputFile.writeObject(encodedInfo);
-            outputFile.writeByte(score);
-        }
-    }
-
+/**
+ * The information of all reviews, stored by columns: every field (product, helpfulness numerator and denominator,
+ * length and score) has its own PackedIntArray, indexed by the review id, where every value takes as many bits as the
+ * largest value of the field.
+ */
+public class ReviewIndex implements IndexFile.Content {
     public static int PRODUCTID_INDEX = 0;
     public static int HELPFNUM_INDEX = 1;
     public static int HELPFDNOM_INDEX = 2;
     public static int REVIEWLENGTH_INDEX = 3;
     public static int SCORE_INDEX = 4;
 
-    private ArrayList<ReviewInfo> data;
+    // Sections of the index file
+    private static final int HEADER_SECTION = 0;
+    private static final int PRODUCT_SECTION = 1;
+    private static final int HELPFNUM_SECTION = 2;
+    private static final int HELPFDNOM_SECTION = 3;
+    private static final int LENGTH_SECTION = 4;
+    private static final int SCORE_SECTION = 5;
+
+    private PackedIntArray productNums;  // the index of the product of every review in the product index
+    private PackedIntArray helpfNums;
+    private PackedIntArray helpfDnoms;
+    private PackedIntArray lengths;
+    private PackedIntArray scores;
+
+    public ReviewIndex() {
+        productNums = new PackedIntArray();
+        helpfNums = new PackedIntArray();
+        helpfDnoms = new PackedIntArray();
+        lengths = new PackedIntArray();
+        scores = new PackedIntArray();
+    }
 
     /**
      * insert the given data into the list containing all the information of reviews.
      */
     public void insertData(List<List<Integer>> inData) {
-        data = new ArrayList<>();
         for (List<Integer> entry : inData) {
-            ReviewInfo rI = new ReviewInfo();
-            int[] info = new int[4];
-            byte score = (byte) entry.get(4).intValue();
-            info[PRODUCTID_INDEX] = entry.get(PRODUCTID_INDEX);
-            info[HELPFNUM_INDEX] = entry.get(HELPFNUM_INDEX);
-            info[HELPFDNOM_INDEX] = entry.get(HELPFDNOM_INDEX);
-            info[REVIEWLENGTH_INDEX] = entry.get(REVIEWLENGTH_INDEX);
-            rI.encodedInfo = Encoding.groupVarintEncode(info);
-            rI.score = score;
-            data.add(rI);
+            addReview(entry.get(PRODUCTID_INDEX), entry.get(HELPFNUM_INDEX), entry.get(HELPFDNOM_INDEX),
+                    entry.get(REVIEWLENGTH_INDEX), entry.get(SCORE_INDEX));
         }
     }
 
     /**
-     * Check if the given review id is valid, i.e. larger than 0 and smaller than #reviews.
+     * Append the information of the next review to the list of reviews.
      */
-    public boolean isReviewIdValid(int reviewId) {
-        return reviewId >= 0 && reviewId <= (data.size() - 1);
+    public void addReview(int productNum, int helpfNum, int helpfDnom, int length, int score) {
+        productNums.add(productNum);
+        helpfNums.add(helpfNum);
+        helpfDnoms.add(helpfDnom);
+        lengths.add(length);
+        scores.add(score);
     }
 
-    private int[] getEntry(int reviewId) {
-        return Encoding.groupVarintDecode(data.get(reviewId).encodedInfo);
+    /**
+     * Check if the given review id is valid, i.e. larger than 0 and smaller than #reviews.
+     */
+    public boolean isReviewIdValid(int reviewId) {
+        return reviewId >= 0 && reviewId <= (scores.size() - 1);
     }
 
     public int getProductNum(int reviewId) {
-        return getEntry(reviewId)[PRODUCTID_INDEX];
+        return productNums.get(reviewId);
     }
 
     public int getScore(int reviewId) {
-        return data.get(reviewId).score;
+        return scores.get(reviewId);
     }
 
     public int getHelpfulnessNumerator(int reviewId) {
-        return getEntry(reviewId)[HELPFNUM_INDEX];
+        return helpfNums.get(reviewId);
     }
 
     public int getHelpfulnessDenominator(int reviewId) {
-        return getEntry(reviewId)[HELPFDNOM_INDEX];
+        return helpfDnoms.get(reviewId);
     }
 
     public int getLength(int reviewId) {
-        return getEntry(reviewId)[REVIEWLENGTH_INDEX];
+        return lengths.get(reviewId);
     }
 
     public int getNumReview(){
-        return data.size();
+        return scores.size();
+    }
+
+    @Override
+    public int getFileType() {
+        return IndexFile.REVIEW_INDEX;
     }
 
-    private void readObject(ObjectInputStream inputFile) throws ClassNotFoundException, IOException
+    /**
+     * Write the index as sections of an index file: the number of reviews, and a section for every column.
+     */
+    @Override
+    public void writeSections(IndexFile.Writer writer) throws IOException
     {
-        data = (ArrayList<ReviewInfo>) inputFile.readObject();
+        writer.addSection(HEADER_SECTION).writeInt(getNumReview());
+        productNums.write(writer.addSection(PRODUCT_SECTION));
+        helpfNums.write(writer.addSection(HELPFNUM_SECTION));
+        helpfDnoms.write(writer.addSection(HELPFDNOM_SECTION));
+        lengths.write(writer.addSection(LENGTH_SECTION));
+        scores.write(writer.addSection(SCORE_SECTION));
     }
 
-    private void writeObject(ObjectOutputStream outputFile) throws IOException
+    /**
+     * Load a review index that was saved with IndexFile.save().
+     */
+    public static ReviewIndex load(String path) throws IOException
     {
-        outputFile.writeObject(this.data);
+        IndexFile file = IndexFile.open(path, IndexFile.REVIEW_INDEX);
+        ReviewIndex index = new ReviewIndex();
+        index.productNums = PackedIntArray.read(file.getSection(PRODUCT_SECTION));
+        index.helpfNums = PackedIntArray.read(file.getSection(HELPFNUM_SECTION));
+        index.helpfDnoms = PackedIntArray.read(file.getSection(HELPFDNOM_SECTION));
+        index.lengths = PackedIntArray.read(file.getSection(LENGTH_SECTION));
+        index.scores = PackedIntArray.read(file.getSection(SCORE_SECTION));
+        return index;
     }
 }
@@ -0,0 +1,241 @@
+package webdata;
+
+import java.util.*;
+
+/**
+ * Ranked retrieval of reviews and products. Given a query, returns the k reviews that best match it, using either the
+ * vector space model (lnn.ltc) or BM25, or the k best products for it. Only the top k reviews are kept, in a bounded
+ * min-heap.
+ * The posting lists of the query tokens are traversed with WAND: every token has an upper bound on the score it can
+ * add to a review (derived from the largest frequency of the token in a single review, which is saved in the token
+ * index), and reviews whose total upper bound cannot beat the current k-th score are skipped without being scored.
+ */
+public class ReviewSearch {
+    public static final double BM25_K1 = 1.2;
+    public static final double BM25_B = 0.75;
+    public static final double PRODUCT_ALPHA = 0.7;  // the weight of the relevance in the rank of a product
+    private static final double RELEVANCE_SCALE = 5;  // scales the relevance to the magnitude of the quality
+    private static final int MIN_PRODUCT_SEARCH_REVIEWS = 100;
+
+    private final IndexReader reader;
+
+    public ReviewSearch(IndexReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Returns a list of the id-s of the k most highly ranked reviews for the given query, using the vector space
+     * ranking function lnn.ltc (using the SMART notation).
+     * The list is sorted by the ranking, and ties are broken by the review id (lower id first).
+     */
+    public Enumeration<Integer> vectorSpaceSearch(Enumeration<String> query, int k) {
+        return toEnumeration(vectorSpaceRanking(query, k));
+    }
+
+    /**
+     * Returns a collection of the id-s of the k most highly ranked products for the given query.
+     * The rank of a product is PRODUCT_ALPHA * relevance + (1 - PRODUCT_ALPHA) * quality. The quality of every product
+     * is computed once when the index is created, so only the relevance is computed here: the reviews that best match
+     * the query are found with vectorSpaceSearch, and every review adds its weight (by length and helpfulness)
+     * divided by its rank to the relevance of its product.
+     * The collection is sorted by the ranking, and ties are broken by the product id.
+     */
+    public Collection<String> productSearch(Enumeration<String> query, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        List<ScoredReview> reviews = vectorSpaceRanking(query, Math.max(10 * k, MIN_PRODUCT_SEARCH_REVIEWS));
+        Map<String, Double> relevance = new HashMap<>();
+        for (int rank = 1; rank <= reviews.size(); rank++) {
+            int reviewId = reviews.get(rank - 1).reviewId;
+            double reviewRelevance = reader.getReviewWeight(reviewId) * RELEVANCE_SCALE / rank;
+            relevance.merge(reader.getProductId(reviewId), reviewRelevance, Double::sum);
+        }
+
+        Map<String, Double> productRanks = new HashMap<>();
+        for (Map.Entry<String, Double> entry : relevance.entrySet()) {
+            double quality = reader.getProductQuality(entry.getKey());
+            productRanks.put(entry.getKey(), PRODUCT_ALPHA * entry.getValue() + (1 - PRODUCT_ALPHA) * quality);
+        }
+        List<String> products = new ArrayList<>(productRanks.keySet());
+        products.sort(Comparator.<String>comparingDouble(productRanks::get).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        return products.subList(0, Math.min(k, products.size()));
+    }
+
+    /**
+     * Rank the reviews for the given query using lnn.ltc, and return the k best ones.
+     */
+    private List<ScoredReview> vectorSpaceRanking(Enumeration<String> query, int k) {
+        Map<String, Integer> queryFreqs = countTokens(query);
+        int numReviews = reader.getNumberOfReviews();
+        List<QueryTerm> terms = new ArrayList<>();
+        double norm = 0;
+        for (Map.Entry<String, Integer> entry : queryFreqs.entrySet()) {
+            int frequency = reader.getTokenFrequency(entry.getKey());
+            if (frequency == 0) {
+                continue;
+            }
+            double weight = (1 + Math.log10(entry.getValue())) * Math.log10((double) numReviews / frequency);
+            terms.add(new QueryTerm(entry.getKey(), weight));
+            norm += weight * weight;
+        }
+        norm = Math.sqrt(norm);
+        for (QueryTerm term : terms) {
+            term.weight = norm > 0 ? term.weight / norm : 0;
+            term.upperBound = (1 + Math.log10(reader.getTokenMaxFrequency(term.token))) * term.weight;
+        }
+        return wand(terms, k, (term, freq, reviewId) -> (1 + Math.log10(freq)) * term.weight);
+    }
+
+    /**
+     * Returns a list of the id-s of the k most highly ranked reviews for the given query, using the Okapi BM25
+     * ranking function with parameters BM25_K1 and BM25_B.
+     * The list is sorted by the ranking, and ties are broken by the review id (lower id first).
+     */
+    public Enumeration<Integer> bm25Search(Enumeration<String> query, int k) {
+        Map<String, Integer> queryFreqs = countTokens(query);
+        int numReviews = reader.getNumberOfReviews();
+        double avgLength = numReviews > 0 ? (double) reader.getTokenSizeOfReviewsLong() / numReviews : 0;
+        List<QueryTerm> terms = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : queryFreqs.entrySet()) {
+            int frequency = reader.getTokenFrequency(entry.getKey());
+            if (frequency == 0) {
+                continue;
+            }
+            double idf = Math.log(1 + (numReviews - frequency + 0.5) / (frequency + 0.5));
+            QueryTerm term = new QueryTerm(entry.getKey(), entry.getValue() * idf);
+            // The tf part of BM25 grows with tf and shrinks with the review length, so it is bounded by the largest
+            // tf of the token in a review of length 0.
+            int maxFreq = reader.getTokenMaxFrequency(term.token);
+            term.upperBound = term.weight * maxFreq * (BM25_K1 + 1) / (maxFreq + BM25_K1 * (1 - BM25_B));
+            terms.add(term);
+        }
+        return toEnumeration(wand(terms, k, (term, freq, reviewId) -> {
+            double lengthNorm = avgLength > 0 ? reader.getReviewLength(reviewId) / avgLength : 0;
+            return term.weight * freq * (BM25_K1 + 1) / (freq + BM25_K1 * (1 - BM25_B + BM25_B * lengthNorm));
+        }));
+    }
+
+    /**
+     * Tokenize the query like the reviews, and count the number of times every token appears in it.
+     */
+    private static Map<String, Integer> countTokens(Enumeration<String> query) {
+        Map<String, Integer> queryFreqs = new LinkedHashMap<>();
+        Tokenizer tokenizer = new Tokenizer();
+        while (query.hasMoreElements()) {
+            tokenizer.reset(query.nextElement());
+            while (tokenizer.next()) {
+                queryFreqs.merge(tokenizer.term(), 1, Integer::sum);
+            }
+        }
+        return queryFreqs;
+    }
+
+    /**
+     * Find the k reviews with the highest scores using the WAND algorithm.
+     * In every step the terms are sorted by their current review, and the pivot is the first term at which the sum of
+     * the upper bounds exceeds the score of the k-th review found so far. No review before the pivot's review can
+     * enter the top k, so the terms before the pivot are advanced directly to it.
+     * @return the top k reviews, sorted from the highest score to the lowest.
+     */
+    private List<ScoredReview> wand(List<QueryTerm> queryTerms, int k, TermScorer scorer) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<ScoredReview> topK = new PriorityQueue<>(k, ScoredReview.WORST_FIRST);
+        List<QueryTerm> terms = new ArrayList<>();
+        for (QueryTerm term : queryTerms) {
+            term.postings = reader.getPostings(term.token);
+            if (term.postings.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+                terms.add(term);
+            }
+        }
+        Comparator<QueryTerm> byReview = Comparator.comparingInt(term -> term.postings.docId());
+
+        while (!terms.isEmpty()) {
+            terms.sort(byReview);
+            double threshold = topK.size() < k ? -1 : topK.peek().score;
+            double bound = 0;
+            int pivot = -1;
+            for (int i = 0; i < terms.size() && pivot == -1; i++) {
+                bound += terms.get(i).upperBound;
+                if (bound > threshold) {
+                    pivot = i;
+                }
+            }
+            if (pivot == -1) {
+                break;  // no remaining review can enter the top k
+            }
+            int pivotReview = terms.get(pivot).postings.docId();
+            if (terms.get(0).postings.docId() == pivotReview) {
+                double score = 0;
+                for (QueryTerm term : terms) {
+                    if (term.postings.docId() == pivotReview) {
+                        score += scorer.score(term, term.postings.freq(), pivotReview);
+                        term.postings.nextDoc();
+                    }
+                }
+                ScoredReview review = new ScoredReview(pivotReview, score);
+                if (topK.size() < k) {
+                    topK.add(review);
+                } else if (ScoredReview.WORST_FIRST.compare(review, topK.peek()) > 0) {
+                    topK.poll();
+                    topK.add(review);
+                }
+            } else {
+                for (int i = 0; i < pivot; i++) {
+                    if (terms.get(i).postings.docId() < pivotReview) {
+                        terms.get(i).postings.advance(pivotReview);
+                    }
+                }
+            }
+            terms.removeIf(term -> term.postings.docId() == PostingsIterator.NO_MORE_DOCS);
+        }
+
+        List<ScoredReview> results = new ArrayList<>(topK);
+        results.sort(ScoredReview.WORST_FIRST.reversed());
+        return results;
+    }
+
+    private static Enumeration<Integer> toEnumeration(List<ScoredReview> reviews) {
+        List<Integer> ids = new ArrayList<>(reviews.size());
+        for (ScoredReview review : reviews) {
+            ids.add(review.reviewId);
+        }
+        return Collections.enumeration(ids);
+    }
+
+    /**
+     * The score a single query term adds to a review in which it appears freq times.
+     */
+    private interface TermScorer {
+        double score(QueryTerm term, int freq, int reviewId);
+    }
+
+    private static class QueryTerm {
+        private final String token;
+        private double weight;  // the query part of the term's score
+        private double upperBound;  // the largest score the term can add to a single review
+        private PostingsIterator postings;
+
+        private QueryTerm(String token, double weight) {
+            this.token = token;
+            this.weight = weight;
+        }
+    }
+
+    static class ScoredReview {
+        // Orders reviews from the worst to the best: lower score first, and for equal scores the higher id first
+        static final Comparator<ScoredReview> WORST_FIRST = Comparator.<ScoredReview>comparingDouble(r -> r.score)
+                .thenComparing(Comparator.<ScoredReview>comparingInt(r -> r.reviewId).reversed());
+
+        final int reviewId;
+        final double score;
+
+        ScoredReview(int reviewId, double score) {
+            this.reviewId = reviewId;
+            this.score = score;
+        }
+    }
+}
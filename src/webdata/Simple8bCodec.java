@@ -0,0 +1,82 @@
+package webdata;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the numbers of a block with Simple-8b: every 64 bit word holds a 4 bit selector and 60 data bits, which
+ * are split into as many numbers of equal width as fit the next numbers of the block. The selectors 0 and 1 hold
+ * runs of 240 and 120 zeros without any data bits. The last word of a block may be partially filled, since the
+ * decoder knows how many numbers the block holds.
+ */
+public class Simple8bCodec extends BlockPostingsCodec {
+    private static final int SELECTOR_SHIFT = 60;
+    private static final int[] COUNTS = {240, 120, 60, 30, 20, 15, 12, 10, 8, 7, 6, 5, 4, 3, 2, 1};
+    private static final int[] BITS = {0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 10, 12, 15, 20, 30, 60};
+
+    @Override
+    public int getId() {
+        return SIMPLE_8B;
+    }
+
+    @Override
+    protected void encodeBlock(int[] values, int n, DataOutputStream out) throws IOException {
+        int pos = 0;
+        while (pos < n) {
+            // Use the first selector (i.e. the one with the most numbers) whose width fits all of its numbers
+            int selector = 0;
+            int count;
+            while (true) {
+                count = Math.min(COUNTS[selector], n - pos);
+                if (fits(values, pos, count, BITS[selector])) {
+                    break;
+                }
+                selector++;
+            }
+            long word = (long) selector << SELECTOR_SHIFT;
+            for (int i = 0; i < count; i++) {
+                word |= (long) values[pos + i] << (i * BITS[selector]);
+            }
+            out.writeLong(word);
+            pos += count;
+        }
+    }
+
+    @Override
+    protected void decodeBlock(ByteBuffer in, int[] values, int n) {
+        int pos = 0;
+        while (pos < n) {
+            long word = in.getLong();
+            int selector = (int) (word >>> SELECTOR_SHIFT);
+            int bits = BITS[selector];
+            int count = Math.min(COUNTS[selector], n - pos);
+            if (bits == 0) {
+                for (int i = 0; i < count; i++) {
+                    values[pos + i] = 0;
+                }
+            } else {
+                long mask = (1L << bits) - 1;
+                for (int i = 0; i < count; i++) {
+                    values[pos + i] = (int) ((word >>> (i * bits)) & mask);
+                }
+            }
+            pos += count;
+        }
+    }
+
+    /**
+     * @return true if the count numbers starting at pos all fit in the given number of bits.
+     */
+    private static boolean fits(int[] values, int pos, int count, int bits) {
+        if (bits >= Integer.SIZE) {
+            return true;
+        }
+        for (int i = pos; i < pos + count; i++) {
+            if (values[i] >>> bits != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
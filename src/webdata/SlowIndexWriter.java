@@ -1,20 +1,21 @@
 package webdata;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-public class SlowIndexWriter {
-	private TreeMap<String, ArrayList<Integer>> tokenDict;  // keys are tokens, values are a list where odd cells are review ids including this token and even cells are the times the token appeared in the review.
-	private TreeMap<String, ArrayList<Integer>> productIds;
-	private TreeMap<Integer, ArrayList<String>> reviewIds;
-	private String dir;
+/**
+ * Index writer that keeps the postings of all tokens in memory, for review collections that fit in the main memory.
+ * With more than one thread (see setNumThreads()), the reviews are split into batches of consecutive reviews that are
+ * passed to the worker threads in turn, every worker adds its batches to a partial tokens dictionary, and the partial
+ * dictionaries are merged once all reviews were read.
+ */
+public class SlowIndexWriter extends BaseIndexWriter {
+	private TokenPostings tokenDict;
 
-	private static final String PRODUCT_INDEX_FILE = "product_index.txt";
-	private static final String REVIEW_INDEX_FILE = "review_index.txt";
-	private static final String TOKEN_INDEX_FILE = "token_index.txt";
-	private static final String TOKEN_INVERTED_INDEX_FILE = "token_inverted_index.txt";
+	private static final int BATCH_SIZE = 4096;  // the number of reviews tokenized by a single task of the parallel build
 
 
 	/**
@@ -22,198 +23,296 @@ public class SlowIndexWriter {
 	* inputFile is the path to the file containing the review data
 	*/
 	public void slowWrite(String inputFile, String dir) {
-		this.dir = dir;
+		startBuild(dir);
+		metrics.startPhase("createDicts");
 		createDicts(inputFile);
-		createDir();
-		createProductIndex();
+		writeProductAndReviewIndices();
+		metrics.startPhase("createTokenIndex");
 		createTokenIndex();
-		createReviewIndex();
+		finishMetrics();
 	}
 
 	/**
-	 * Delete all index files by removing the given directory
+	 * Create temporary dictionaries that will store all information, before saving the indices to the disk.
+	 * @param inputFile
 	 */
-	public void removeIndex(String dir) {
-		File dirToRemove = new File(dir);
-		File[] contents = dirToRemove.listFiles();
-		if (contents != null) {
-			for (File file : contents) {
-				file.delete();
+	private void createDicts(String inputFile){
+		tokenDict = new TokenPostings();
+		if (numThreads > 1) {
+			createDictsParallel(inputFile);
+		} else {
+			Tokenizer tokenizer = new Tokenizer();
+			try (DataParser dataParser = new DataParser(inputFile)) {
+				for (int i = 0; dataParser.hasNext(); i++) {
+					HashMap<String, String> review = dataParser.next();
+					addReview(review, i + 1, addReviewText(review.get("text"), i + 1, tokenDict, tokenizer));
+				}
+			} catch (IOException e) {
+				System.out.println("Error occurred while reading the reviews input file.");
+				System.exit(1);
 			}
 		}
-		dirToRemove.delete();
+		countReviews();
 	}
 
 	/**
-	 * Create a new directory in the path specified in the instance initialization.
+	 * Create the dictionaries like createDicts(), with the reviews parsed and tokenized by numThreads worker threads.
+	 * The calling thread reads the reviews, passes batches of BATCH_SIZE consecutive reviews to the workers in turn, and
+	 * adds the products and fields of every batch once it was parsed, in the order of the batches. Every worker adds
+	 * the texts of the batches it gets, in order, to a partial tokens dictionary of its own, so the postings of every
+	 * token in a worker are sorted. The partial dictionaries are merged once, after all reviews were read (see
+	 * mergeWorkers()). At most 2 * numThreads batches are kept in memory at a time.
 	 */
-	private void createDir(){
-		Path path = Path.of(this.dir);
-		try {
-			Files.createDirectories(path);
+	private void createDictsParallel(String inputFile) {
+		Worker[] workers = new Worker[numThreads];
+		for (int w = 0; w < numThreads; w++) {
+			workers[w] = new Worker();
+		}
+		ArrayDeque<ReviewBatch> pending = new ArrayDeque<>();
+		try (DataParser dataParser = new DataParser(inputFile)) {
+			int numBatches = 0;
+			ReviewBatch batch = new ReviewBatch(0);
+			for (int i = 0; dataParser.hasNext(); i++) {
+				batch.reviews.add(dataParser.nextReview());
+				if (batch.reviews.size() == BATCH_SIZE) {
+					submitBatch(batch, workers[numBatches++ % numThreads], pending);
+					batch = new ReviewBatch(i + 1);
+				}
+			}
+			if (!batch.reviews.isEmpty()) {
+				submitBatch(batch, workers[numBatches % numThreads], pending);
+			}
+			while (!pending.isEmpty()) {
+				addBatch(pending.poll());
+			}
+			tokenDict = mergeWorkers(workers);
 		} catch (IOException e) {
-			e.printStackTrace();
+			System.out.println("Error occurred while reading the reviews input file.");
+			System.exit(1);
+		} finally {
+			for (Worker worker : workers) {
+				worker.thread.shutdownNow();
+			}
 		}
 	}
 
 	/**
-	 * Create temporary dictionaries that will store all information, before saving the indices to the disk.
-	 * @param inputFile
+	 * Start parsing and tokenizing the given batch by the given worker. If too many batches are pending, add the
+	 * oldest one first.
 	 */
-	private void createDicts(String inputFile){
-		productIds = new TreeMap<>();
-		tokenDict = new TreeMap<>();
-		reviewIds = new TreeMap<>();
-
-		DataParser dataParser = null;
-		try {
-			dataParser = new DataParser(inputFile);
-		} catch (IOException e) {
-			System.out.println("Error occurred while reading the reviews input file.");
-			System.exit(1);
+	private void submitBatch(ReviewBatch batch, Worker worker, ArrayDeque<ReviewBatch> pending) {
+		if (pending.size() >= 2 * numThreads) {
+			addBatch(pending.poll());
 		}
+		batch.result = worker.thread.submit(() -> batch.tokenize(worker.tokens, worker.tokenizer));
+		pending.add(batch);
+	}
 
-		for (int i = 0; i < dataParser.allReviews.size(); i++) {
-			addProductId(dataParser.allReviews.get(i).get("productId"), i + 1);
-			int length = addReviewText(dataParser.allReviews.get(i).get("text"), i + 1);
-			addReviewId(dataParser.allReviews.get(i), i, length);
+	/**
+	 * Wait for the given batch to be parsed and tokenized, and add the products and fields of its reviews. All batches
+	 * of earlier reviews must already be added.
+	 */
+	private void addBatch(ReviewBatch batch) {
+		await(batch.result);
+		for (int j = 0; j < batch.lengths.length; j++) {
+			addReview(batch.fields.get(j), batch.firstReview + j + 1, batch.lengths[j]);
 		}
 	}
 
 	/**
-	 * Split the given text of the i-th review into tokens and add them to the tokens dictionary.
-	 * @param reviewText the text of the review that should be added.
-	 * @param reviewIndex the number of the given review.
-	 * @return the number of tokens in the given review text.
+	 * Merge the partial dictionaries of the given workers, after they tokenized all reviews. Every term of a worker is
+	 * added to the merged dictionary once, and the posting lists that the workers have for every term are then merged
+	 * by review id on the worker threads, each taking a range of the merged term ids.
 	 */
-	private int addReviewText(String reviewText, int reviewIndex){
-		String[] tokens = reviewText.split("[^a-zA-Z0-9]");  // split to alphanumeric tokens
-		int reviewLength = 0;
-		for (String token: tokens){
-			if (!token.matches("[a-zA-Z0-9]+")){
-				continue;
-			}
-			reviewLength += 1;
-			token = token.toLowerCase();
-			if (tokenDict.containsKey(token)){  // token already exists, update its entry
-				List<Integer> tokenInfo = tokenDict.get(token);
-				// check if the current review was already added to the token's review list. If yes, increase the # appearances of the token, else add it with # appearance = 1.
-				if (tokenInfo.get(tokenInfo.size()-2) == reviewIndex){
-					tokenInfo.set(tokenInfo.size()-1 ,tokenInfo.get(tokenInfo.size()-1) + 1);
-				} else {  // token appears first time in the given review
-					tokenInfo.add(reviewIndex);
-					tokenInfo.add(1);
+	private TokenPostings mergeWorkers(Worker[] workers) {
+		TokenPostings merged = new TokenPostings();
+		ArrayList<IntList[]> termParts = new ArrayList<>();  // the posting list of every merged term in every worker
+		for (int w = 0; w < workers.length; w++) {
+			TokenPostings part = workers[w].tokens;
+			for (int id = 0; id < part.terms.size(); id++) {
+				int termId = merged.terms.add(part.terms.get(id));
+				if (termId == termParts.size()) {
+					termParts.add(new IntList[workers.length]);
 				}
+				termParts.get(termId)[w] = part.postings.get(id);
 			}
-			else{  // token seen for the first time, add a new entry for it
-				tokenDict.put(token, new ArrayList<>(Arrays.asList(reviewIndex, 1)));
-			}
+			workers[w].tokens = null;
 		}
-		return reviewLength;
+		IntList[][] parts = termParts.toArray(new IntList[0][]);
+		termParts = null;
+		IntList[] postings = new IntList[parts.length];
+		List<Future<?>> results = new ArrayList<>(workers.length);
+		for (int w = 0; w < workers.length; w++) {
+			int from = (int) ((long) parts.length * w / workers.length);
+			int to = (int) ((long) parts.length * (w + 1) / workers.length);
+			results.add(workers[w].thread.submit(() -> {
+				for (int termId = from; termId < to; termId++) {
+					postings[termId] = mergePostings(parts[termId]);
+					parts[termId] = null;
+				}
+			}));
+		}
+		for (Future<?> result : results) {
+			await(result);
+		}
+		merged.postings.addAll(Arrays.asList(postings));
+		return merged;
 	}
 
 	/**
-	 * Update the productId dictionary by adding to it the given product. If the product already exists, it adds review
-	 * id to the reviews that are matching to this product.
+	 * Merge posting lists of the same term from different workers, each sorted by review id, into a single sorted list.
+	 * Postings are copied from the list with the lowest next review id up to the next review id of the other lists,
+	 * so the lists are compared once for every batch of reviews rather than for every posting.
+	 * @param parts the posting list of every worker, or null for a worker without postings of the term.
 	 */
-	private void addProductId(String productId, int reviewId) {
-		if (!productIds.containsKey(productId)) {
-			productIds.put(productId, new ArrayList<>(Arrays.asList(reviewId, 0)));
+	private static IntList mergePostings(IntList[] parts) {
+		int total = 0;
+		int numParts = 0;
+		IntList last = null;
+		for (IntList part : parts) {
+			if (part != null) {
+				total += part.size();
+				numParts++;
+				last = part;
+			}
 		}
-		else {
-			ArrayList<Integer> product = productIds.get(productId);
-			product.set(1, product.get(1) + 1);
+		if (numParts == 1) {
+			return last;
 		}
+		IntList merged = new IntList(total);
+		int[] next = new int[parts.length];  // the position of the next posting in every list
+		while (merged.size() < total) {
+			int min = -1;
+			int secondReview = Integer.MAX_VALUE;  // the lowest next review id of all lists except min
+			for (int p = 0; p < parts.length; p++) {
+				if (parts[p] == null || next[p] == parts[p].size()) {
+					continue;
+				}
+				int review = parts[p].getInt(next[p]);
+				if (min == -1 || review < parts[min].getInt(next[min])) {
+					if (min != -1) {
+						secondReview = parts[min].getInt(next[min]);
+					}
+					min = p;
+				} else {
+					secondReview = Math.min(secondReview, review);
+				}
+			}
+			int end = next[min];
+			while (end < parts[min].size() && parts[min].getInt(end) < secondReview) {
+				end += 2;
+			}
+			merged.addAll(parts[min], next[min], end);
+			next[min] = end;
+		}
+		return merged;
 	}
 
 	/**
-	 * Adds all the information that is relevant to the given reviewId to the reviewIds dictionary.
+	 * A worker thread of the parallel build, with the partial tokens dictionary of the reviews it tokenized. The
+	 * dictionary and the tokenizer are only used by the worker thread.
 	 */
-	private void addReviewId(HashMap<String, String> review, int reviewId, int length) {
-		reviewIds.put(reviewId, new ArrayList<>());
-		// 0 - productId, 1 - score, 2 - helpfulness, 3 - length
-		for (String field : DataParser.INTEREST_FIELDS) {
-			if (field.equals("text")) { continue; }
-			reviewIds.get(reviewId).add(review.get(field));
-		}
-		reviewIds.get(reviewId).add(String.valueOf(length));
+	private static class Worker {
+		private final ExecutorService thread = Executors.newSingleThreadExecutor();
+		private TokenPostings tokens = new TokenPostings();
+		private final Tokenizer tokenizer = new Tokenizer();
 	}
 
 	/**
-	 * Creates and saves to the disk the product index, i.e. all the information that is related to products.
+	 * Consecutive reviews that are parsed and tokenized together by a worker of the parallel build.
 	 */
-	private void createProductIndex() {
-		LinkedList<String> ids = new LinkedList<>(productIds.keySet());
-		ArrayList<ArrayList<Integer>> vals = new ArrayList<>(productIds.values());
-		int k = 8;
-		KFront kf = new KFront();
-		kf.createKFront(k, ids);
-		for (int i = 0; i < vals.size(); i++) {
-			kf.getTable().get(i).addAll(vals.get(i));
-		}
-
-		ProductIndex pIndex = new ProductIndex(k);
-		pIndex.insertData(kf.getTable(), kf.getConcatString());
-		saveToDir(PRODUCT_INDEX_FILE, pIndex);
+	private static class ReviewBatch {
+		private final int firstReview;  // the index of the first review in the batch, starting from 0
+		private final ArrayList<String> reviews;  // the unparsed reviews, as read by the DataParser
+		private ArrayList<HashMap<String, String>> fields;  // the parsed fields of every review, except for its text
+		private int[] lengths;  // the number of tokens in every review of the batch
+		private Future<?> result;
+
+		private ReviewBatch(int firstReview) {
+			this.firstReview = firstReview;
+			this.reviews = new ArrayList<>(BATCH_SIZE);
+		}
+
+		/**
+		 * Parse the reviews of the batch and add their texts to the given tokens dictionary, whose reviews all come
+		 * before this batch.
+		 */
+		private void tokenize(TokenPostings tokens, Tokenizer tokenizer) {
+			fields = new ArrayList<>(reviews.size());
+			lengths = new int[reviews.size()];
+			for (int j = 0; j < reviews.size(); j++) {
+				HashMap<String, String> review = DataParser.parseReview(reviews.get(j));
+				lengths[j] = addReviewText(review.remove("text"), firstReview + j + 1, tokens, tokenizer);
+				fields.add(review);
+			}
+			reviews.clear();
+		}
 	}
 
 	/**
-	 * Creates the index file for the tokens in the collection.
-	 * The index is created using the k-1-in-k front coding method.
+	 * The tokens dictionary of the build. Every token gets a term id by the order of its first appearance, and the
+	 * postings of every term are kept in a primitive list where even cells are review ids including the token and odd
+	 * cells are the times the token appeared in the review. Postings are added by review order, so the lists are
+	 * sorted, and the tokens are sorted only once, when the token index is created.
 	 */
-	private void createTokenIndex(){
-		LinkedList<String> tokens = new LinkedList<>(tokenDict.keySet());
-		ArrayList<ArrayList<Integer>> vals = new ArrayList<>(tokenDict.values());
-		int k = 8;
+	private static class TokenPostings {
+		private final TermDictionary terms = new TermDictionary();
+		private final ArrayList<IntList> postings = new ArrayList<>();
 
-		KFront kf = new KFront(true);
-		kf.createKFront(k, tokens);
-
-		TokensIndex tIdx = new TokensIndex(k, this.dir);
-		tIdx.insertData(kf.getTable(), vals, kf.getConcatString());
-
-		saveToDir(TOKEN_INDEX_FILE, tIdx);
+		/**
+		 * Add an appearance of the current token of the given tokenizer in the given review.
+		 */
+		private void addToken(Tokenizer tokenizer, int reviewIndex) {
+			int termId = terms.add(tokenizer.buffer(), tokenizer.start(), tokenizer.end());
+			if (termId == postings.size()) {  // token seen for the first time
+				postings.add(new IntList(2));
+			}
+			IntList tokenInfo = postings.get(termId);
+			int size = tokenInfo.size();
+			// check if the current review was already added to the token's review list. If yes, increase the # appearances of the token, else add it with # appearance = 1.
+			if (size > 0 && tokenInfo.getInt(size - 2) == reviewIndex) {
+				tokenInfo.setInt(size - 1, tokenInfo.getInt(size - 1) + 1);
+			} else {
+				tokenInfo.add(reviewIndex);
+				tokenInfo.add(1);
+			}
+		}
 	}
 
 	/**
-	 * Creates and saves to the disk the review index which hold all information related to reviews.
+	 * Split the given text of the i-th review into tokens and add them to the given tokens dictionary.
+	 * @param reviewText the text of the review that should be added.
+	 * @param reviewIndex the number of the given review.
+	 * @param tokenizer the tokenizer of the calling thread.
+	 * @return the number of tokens in the given review text.
 	 */
-	private void createReviewIndex() {
-		// Revise the review dictionary to the correct structure & change productIDs to product index
-		LinkedList<List<Integer>> dictValues = new LinkedList<>();
-		for (int review : reviewIds.keySet()) {
-			ArrayList<String> vals = reviewIds.get(review);
-			ArrayList<Integer> new_vals = new ArrayList<>(List.of(0, 0, 0, 0, 0));
-			new_vals.set(ReviewIndex.PRODUCTID_INDEX, productIds.headMap(vals.get(0)).size());
-			String[] helpf = vals.get(2).split("/");
-			new_vals.set(ReviewIndex.HELPFNUM_INDEX, Integer.parseInt(helpf[0]));
-			new_vals.set(ReviewIndex.HELPFDNOM_INDEX, Integer.parseInt(helpf[1]));
-			new_vals.set(ReviewIndex.REVIEWLENGTH_INDEX,  Integer.parseInt(vals.get(3)));
-			new_vals.set(ReviewIndex.SCORE_INDEX,  (int) Float.parseFloat(vals.get(1)));
-			dictValues.add(new_vals);
-		}
-		ReviewIndex rIndex = new ReviewIndex();
-		rIndex.insertData(dictValues);
-
-		saveToDir(REVIEW_INDEX_FILE, rIndex);
+	private static int addReviewText(String reviewText, int reviewIndex, TokenPostings tokenDict, Tokenizer tokenizer){
+		tokenizer.reset(reviewText);
+		int reviewLength = 0;
+		while (tokenizer.next()){
+			reviewLength += 1;
+			tokenDict.addToken(tokenizer, reviewIndex);
+		}
+		return reviewLength;
 	}
 
 	/**
-	 * Save the given object to disk under the given name. The file is saved to the dir that was passed to the
-	 * SlowWrite() function.
+	 * Creates the index file for the tokens in the collection.
+	 * The index is created using the k-1-in-k front coding method.
 	 */
-	private void saveToDir(String name, Object obj) {
-		FileOutputStream fileOut = null;
-		try {
-			fileOut = new FileOutputStream(this.dir + "/" + name);
-			ObjectOutputStream out = new ObjectOutputStream(fileOut);
-			out.writeObject(obj);
-			out.close();
-			fileOut.close();
-		} catch (IOException e) {
-			System.out.println("Error occurred while saving the index file: " + name);
-			e.printStackTrace();
-			System.exit(1);
+	private void createTokenIndex(){
+		Integer[] order = tokenDict.terms.sortedIds();
+		List<String> tokens = new ArrayList<>(order.length);
+		List<IntList> vals = new ArrayList<>(order.length);
+		for (int termId : order) {
+			tokens.add(tokenDict.terms.get(termId));
+			vals.add(tokenDict.postings.get(termId));
 		}
+		KFront kf = new KFront(true);
+		kf.createKFront(K, tokens);
+
+		TokensIndex tIdx = createTokensIndex();
+		tIdx.insertData(kf.getTable(), vals, kf.getConcatBytes());
+		saveTokenIndex(tIdx);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+package webdata;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Assigns dense int ids to terms (0, 1, 2... by the order of their first appearance), using an open addressing hash
+ * table with linear probing. A term can be looked up by a span of a char array, such as the buffer of a Tokenizer,
+ * so a String is only created for a term the first time it is seen.
+ */
+public class TermDictionary {
+    private static final int INITIAL_CAPACITY = 1024;  // in terms, a power of 2
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    private int[] table;  // the id + 1 of the term at every slot, 0 for an empty slot
+    private int shift;  // 32 - log2 of the number of slots
+    private int[] hashes;  // the hash of every term, by id
+    private String[] terms;  // the terms, by id
+    private int size;
+
+    public TermDictionary() {
+        table = new int[2 * INITIAL_CAPACITY];
+        shift = Integer.SIZE - Integer.numberOfTrailingZeros(table.length);
+        hashes = new int[INITIAL_CAPACITY];
+        terms = new String[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Return the id of the term held by the given chars, between start (inclusive) and end (exclusive), adding the
+     * term to the dictionary if it was not seen before.
+     */
+    public int add(char[] chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars[i];  // the same hash as String.hashCode()
+        }
+        int mask = table.length - 1;
+        for (int slot = (hash * HASH_MULTIPLIER) >>> shift; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id == -1) {
+                return insert(slot, new String(chars, start, end - start), hash);
+            }
+            if (hashes[id] == hash && equals(terms[id], chars, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Return the id of the given term, adding it to the dictionary if it was not seen before.
+     */
+    public int add(String term) {
+        int hash = term.hashCode();
+        int mask = table.length - 1;
+        for (int slot = (hash * HASH_MULTIPLIER) >>> shift; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id == -1) {
+                return insert(slot, term, hash);
+            }
+            if (hashes[id] == hash && terms[id].equals(term)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * @return the term with the given id.
+     */
+    public String get(int id) {
+        return terms[id];
+    }
+
+    /**
+     * @return the number of terms in the dictionary.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the ids of all terms, sorted by the lexicographic order of the terms.
+     */
+    public Integer[] sortedIds() {
+        Integer[] ids = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i;
+        }
+        Arrays.sort(ids, Comparator.comparing(this::get));
+        return ids;
+    }
+
+    /**
+     * Add a new term at the given empty slot, growing the table if it becomes more than half full.
+     */
+    private int insert(int slot, String term, int hash) {
+        int id = size++;
+        if (id == terms.length) {
+            terms = Arrays.copyOf(terms, 2 * terms.length);
+            hashes = Arrays.copyOf(hashes, 2 * hashes.length);
+        }
+        terms[id] = term;
+        hashes[id] = hash;
+        table[slot] = id + 1;
+        if (2 * size > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Double the number of slots and insert all terms again.
+     */
+    private void rehash() {
+        table = new int[2 * table.length];
+        shift--;
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = (hashes[id] * HASH_MULTIPLIER) >>> shift;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private static boolean equals(String term, char[] chars, int start, int end) {
+        if (term.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (term.charAt(i - start) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,196 @@
+package webdata;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A perfect hash from the terms of a dictionary to their ordinals, built with the hash-and-displace method.
+ * The terms are split into buckets by their hash, and every bucket gets a seed, chosen so that the slots of all terms
+ * (a second hash of the term and the seed of its bucket) are distinct. Finding a term therefore takes two array reads,
+ * with no collisions to resolve. Every slot holds the ordinal of its term and a fingerprint of the term's hash, so most
+ * terms that are not in the dictionary are rejected without reading the dictionary itself. A term that passes the
+ * fingerprint check should still be compared to the dictionary word at the returned ordinal.
+ */
+public class TermHash {
+    private static final int BUCKET_SIZE = 4;  // the average number of terms in a bucket
+    private static final double LOAD_FACTOR = 0.9;  // the ratio of terms to slots
+    private static final int MAX_SEED = 1 << 24;
+    private static final int EMPTY = -1;
+
+    private final int[] seeds;  // the seed of every bucket
+    private final int[] ordinals;  // the ordinal of the term in every slot, or EMPTY
+    private final int[] fingerprints;  // the fingerprint of the term in every slot
+
+    private TermHash(int[] seeds, int[] ordinals, int[] fingerprints) {
+        this.seeds = seeds;
+        this.ordinals = ordinals;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Build a perfect hash of the given distinct terms, where the i-th term is mapped to i.
+     */
+    public static TermHash build(byte[][] terms) {
+        int n = terms.length;
+        int numBuckets = Math.max(1, (n + BUCKET_SIZE - 1) / BUCKET_SIZE);
+        int numSlots = Math.max(1, (int) Math.ceil(n / LOAD_FACTOR));
+        long[] hashes = new long[n];
+        int[] bucketSizes = new int[numBuckets + 1];
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hash(terms[i]);
+            bucketSizes[bucket(hashes[i], numBuckets) + 1]++;
+        }
+        // Group the terms by their buckets (counting sort), the terms of bucket b are in
+        // byBucket[bucketStarts[b]..bucketStarts[b + 1])
+        int[] bucketStarts = new int[numBuckets + 1];
+        for (int b = 0; b < numBuckets; b++) {
+            bucketStarts[b + 1] = bucketStarts[b] + bucketSizes[b + 1];
+        }
+        int[] next = Arrays.copyOf(bucketStarts, numBuckets);
+        int[] byBucket = new int[n];
+        for (int i = 0; i < n; i++) {
+            byBucket[next[bucket(hashes[i], numBuckets)]++] = i;
+        }
+        // Place the largest buckets first, while most slots are still free
+        Integer[] order = new Integer[numBuckets];
+        for (int b = 0; b < numBuckets; b++) {
+            order[b] = b;
+        }
+        Arrays.sort(order, (b1, b2) -> Integer.compare(bucketStarts[b2 + 1] - bucketStarts[b2],
+                bucketStarts[b1 + 1] - bucketStarts[b1]));
+
+        int[] seeds = new int[numBuckets];
+        int[] ordinals = new int[numSlots];
+        int[] fingerprints = new int[numSlots];
+        Arrays.fill(ordinals, EMPTY);
+        int[] slots = new int[BUCKET_SIZE];
+        for (int b : order) {
+            int start = bucketStarts[b];
+            int count = bucketStarts[b + 1] - start;
+            if (count == 0) {
+                break;  // all remaining buckets are empty
+            }
+            if (slots.length < count) {
+                slots = new int[count];
+            }
+            int seed = 0;
+            while (!trySeed(hashes, byBucket, start, count, seed, ordinals, slots)) {
+                seed++;
+                if (seed == MAX_SEED) {
+                    throw new IllegalStateException("Could not build a perfect hash, are the terms distinct?");
+                }
+            }
+            seeds[b] = seed;
+            for (int j = 0; j < count; j++) {
+                int term = byBucket[start + j];
+                ordinals[slots[j]] = term;
+                fingerprints[slots[j]] = fingerprint(hashes[term]);
+            }
+        }
+        return new TermHash(seeds, ordinals, fingerprints);
+    }
+
+    /**
+     * Check whether the given seed maps all terms of a bucket to distinct free slots, and if so fill the slots.
+     */
+    private static boolean trySeed(long[] hashes, int[] byBucket, int start, int count, int seed, int[] ordinals,
+                                   int[] slots) {
+        for (int j = 0; j < count; j++) {
+            int slot = slot(hashes[byBucket[start + j]], seed, ordinals.length);
+            if (ordinals[slot] != EMPTY) {
+                return false;
+            }
+            for (int i = 0; i < j; i++) {
+                if (slots[i] == slot) {
+                    return false;
+                }
+            }
+            slots[j] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * @return the ordinal of the given UTF-8 encoded term, or -1 if it is certainly not in the dictionary.
+     */
+    public int get(byte[] term) {
+        long hash = hash(term);
+        int slot = slot(hash, seeds[bucket(hash, seeds.length)], ordinals.length);
+        if (ordinals[slot] == EMPTY || fingerprints[slot] != fingerprint(hash)) {
+            return -1;
+        }
+        return ordinals[slot];
+    }
+
+    /**
+     * @return the number of bytes used by the hash.
+     */
+    public long sizeInBytes() {
+        return (long) Integer.BYTES * (seeds.length + ordinals.length + fingerprints.length);
+    }
+
+    /**
+     * Write the hash to the given stream: the number of buckets and of slots, followed by the seeds, the ordinals and
+     * the fingerprints.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(seeds.length);
+        out.writeInt(ordinals.length);
+        for (int seed : seeds) {
+            out.writeInt(seed);
+        }
+        for (int ordinal : ordinals) {
+            out.writeInt(ordinal);
+        }
+        for (int fingerprint : fingerprints) {
+            out.writeInt(fingerprint);
+        }
+    }
+
+    /**
+     * Read a hash that was written by write().
+     */
+    public static TermHash read(ByteBuffer in) {
+        int[] seeds = new int[in.getInt()];
+        int numSlots = in.getInt();
+        int[] ordinals = new int[numSlots];
+        int[] fingerprints = new int[numSlots];
+        in.asIntBuffer().get(seeds).get(ordinals).get(fingerprints);
+        return new TermHash(seeds, ordinals, fingerprints);
+    }
+
+    /**
+     * A 64 bit hash of the given bytes: FNV-1a, followed by the finalizer of MurmurHash3 to mix the high bits.
+     */
+    private static long hash(byte[] term) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : term) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int bucket(long hash, int numBuckets) {
+        return (int) Long.remainderUnsigned(hash, numBuckets);
+    }
+
+    private static int slot(long hash, int seed, int numSlots) {
+        return (int) Long.remainderUnsigned(mix(hash ^ (seed * 0x9e3779b97f4a7c15L)), numSlots);
+    }
+
+    private static int fingerprint(long hash) {
+        return (int) (hash >>> 32);
+    }
+}
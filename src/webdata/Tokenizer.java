@@ -0,0 +1,127 @@
+package webdata;
+
+/**
+ * Splits text into tokens: maximal runs of ASCII letters and digits, lowercased. Every other character separates
+ * tokens. The text is scanned once, and the characters of a token are lowercased in place in a reusable buffer, so
+ * reading a token's span allocates nothing; term() creates a String only when one is needed.
+ * The same rules are used for the reviews when the index is written and for the queries when it is read.
+ * A tokenizer is not thread safe, but can be reused for any number of texts.
+ * <pre>
+ *     tokenizer.reset(text);
+ *     while (tokenizer.next()) {
+ *         ... tokenizer.term() ...
+ *     }
+ * </pre>
+ */
+public class Tokenizer {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final boolean[] TOKEN_CHARS = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            TOKEN_CHARS[c] = true;
+            TOKEN_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            TOKEN_CHARS[c] = true;
+        }
+    }
+
+    private char[] buffer;
+    private int length;  // the length of the current text
+    private int start;  // the span of the current token in the buffer
+    private int end;
+
+    public Tokenizer() {
+        buffer = new char[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Start tokenizing the given text.
+     */
+    public void reset(String text) {
+        length = text.length();
+        if (length > buffer.length) {
+            buffer = new char[Math.max(length, 2 * buffer.length)];
+        }
+        text.getChars(0, length, buffer, 0);
+        start = 0;
+        end = 0;
+    }
+
+    /**
+     * Move to the next token of the text.
+     * @return false if there are no more tokens.
+     */
+    public boolean next() {
+        int i = end;
+        while (i < length && !isTokenChar(buffer[i])) {
+            i++;
+        }
+        if (i == length) {
+            start = length;
+            end = length;
+            return false;
+        }
+        start = i;
+        for (; i < length && isTokenChar(buffer[i]); i++) {
+            buffer[i] = toLowerCase(buffer[i]);
+        }
+        end = i;
+        return true;
+    }
+
+    /**
+     * @return the current token.
+     */
+    public String term() {
+        return new String(buffer, start, end - start);
+    }
+
+    /**
+     * @return the buffer holding the lowercased characters of the current token, between start() and end().
+     */
+    public char[] buffer() {
+        return buffer;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Lowercase the ASCII letters of the given query token, the same way tokens are lowercased by next().
+     * Other characters are kept, so patterns such as "choc*" keep their wildcards.
+     * @return the given string itself if it has no uppercase ASCII letters.
+     */
+    public static String normalize(String token) {
+        int i = 0;
+        while (i < token.length() && !isUpperCase(token.charAt(i))) {
+            i++;
+        }
+        if (i == token.length()) {
+            return token;
+        }
+        char[] chars = token.toCharArray();
+        for (; i < chars.length; i++) {
+            chars[i] = toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static boolean isTokenChar(char c) {
+        return c < TOKEN_CHARS.length && TOKEN_CHARS[c];
+    }
+
+    private static boolean isUpperCase(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static char toLowerCase(char c) {
+        return isUpperCase(c) ? (char) (c + ('a' - 'A')) : c;
+    }
+}
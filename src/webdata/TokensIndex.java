@@ -2,63 +2,100 @@ package webdata;
 
 import java.io.IOException;
 import java.io.*;
-import java.math.BigInteger;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
-public class TokensIndex implements Serializable {
-    public class TokenInfo implements Serializable{
-        private short stringInfo; // This is either a pointer to the concatenated string, or a prefix size.
-        private short frequency;
-        private short collectionFrequency;
-        private short length;
-        private int invertedIndexPtr;
-
-        public short getFrequency(){ return frequency;}
-        public short getCollectionFrequency(){ return collectionFrequency;}
-        public int getInvertedIdxPtr(){ return invertedIndexPtr;}
-
-        private void readObject(ObjectInputStream inputFile) throws IOException, ClassNotFoundException {
-            stringInfo = inputFile.readShort();
-            frequency = inputFile.readShort();
-            collectionFrequency = inputFile.readShort();
-            length = inputFile.readShort();
-            invertedIndexPtr = inputFile.readInt();
-        }
-
-        private void writeObject(ObjectOutputStream outputFile) throws IOException {
-            outputFile.writeShort(stringInfo);
-            outputFile.writeShort(frequency);
-            outputFile.writeShort(collectionFrequency);
-            outputFile.writeShort(length);
-            outputFile.writeInt(invertedIndexPtr);
-        }
-    }
-
+/**
+ * The dictionary of all tokens in the collection. The fields of the tokens are stored as parallel primitive arrays
+ * (struct of arrays), where the i-th cell of every array belongs to the i-th token in sorted order, so the index does
+ * not hold an object per token.
+ */
+public class TokensIndex implements IndexFile.Content {
     // Indices of data in the input array
     public static int POINTER_INDEX = 0;
     public static int PREFIX_INDEX = 1;
     public static int TOKEN_LENGTH = 2;
     private static final String TOKEN_INVERTED_INDEX_FILE = "token_inverted_index.txt";
+    // Sections of the index file
+    private static final int HEADER_SECTION = 0;
+    private static final int DICTIONARY_SECTION = 1;
+    private static final int STRING_INFO_SECTION = 2;
+    private static final int FREQUENCY_SECTION = 3;
+    private static final int COLLECTION_FREQUENCY_SECTION = 4;
+    private static final int LENGTH_SECTION = 5;
+    private static final int MAX_FREQUENCY_SECTION = 6;
+    private static final int INVERTED_INDEX_PTR_SECTION = 7;
+    private static final int TERM_HASH_SECTION = 8;  // only saved if the index has a term hash
+    public static final int DEFAULT_SKIP_INTERVAL = 0;  // no skip entries unless the writer enables them
+    private static final int INITIAL_CAPACITY = 1024;
 
-
-    private ArrayList<TokenInfo> data;
-    private String dictString;
-    private int numTokens;  // the total number of tokens in the collection, including repetitions
+    private int size;  // the number of tokens in the dictionary
+    private int[] stringInfo;  // This is either a pointer to the concatenated string, or a prefix size.
+    private int[] frequency;
+    private long[] collectionFrequency;
+    private int[] length;
+    private int[] maxFrequency;  // the largest number of times the token appears in a single review
+    private long[] invertedIndexPtr;
+    private ByteBuffer dict;  // the concatenated UTF-8 bytes of all tokens, read with absolute gets
+    private TermHash termHash;  // maps tokens to their indices, null if the index is searched by front coding only
+    private long numTokens;  // the total number of tokens in the collection, including repetitions
     private int k;
+    private int skipInterval;  // a skip entry is saved for every skipInterval postings, 0 if skips are disabled
+    private long skipBytes;  // the total size of the skip entries in the inverted index file
+    private PostingsCodec codec;  // the encoding of the posting lists
     private String dir;
     private RandomAccessFile invertedIndexFile;
+    private PostingsOutput invertedIndexOutput;  // buffered output of the inverted index file
+    private PostingsWriter postingsWriter;  // the writer of the posting list of the token being inserted
+
+    private TokensIndex() {
+        // Used by load()
+    }
 
     public TokensIndex(int k, String dir) {
-        this.data = new ArrayList<>();
-        this.dictString = null;
+        this(k, dir, DEFAULT_SKIP_INTERVAL);
+    }
+
+    /**
+     * @param skipInterval the number of postings between two skip entries in the inverted index, or 0 to save the
+     *                     inverted index without skip entries.
+     */
+    public TokensIndex(int k, String dir, int skipInterval) {
+        this(k, dir, new EliasDeltaCodec(skipInterval), skipInterval);
+    }
+
+    /**
+     * @param codec the encoding of the posting lists in the inverted index.
+     * @param skipInterval the skip interval of the codec, 0 if it does not use one.
+     */
+    public TokensIndex(int k, String dir, PostingsCodec codec, int skipInterval) {
+        allocate(INITIAL_CAPACITY);
+        this.dict = null;
         this.numTokens = 0;
         this.k = k;
+        this.skipInterval = skipInterval;
+        this.skipBytes = 0;
+        this.codec = codec;
         this.dir = dir;
         createRandomAccessFile();
     }
 
+    /**
+     * Allocate the arrays of the token fields with the given capacity, keeping the tokens that were already inserted.
+     */
+    private void allocate(int capacity) {
+        stringInfo = stringInfo == null ? new int[capacity] : Arrays.copyOf(stringInfo, capacity);
+        frequency = frequency == null ? new int[capacity] : Arrays.copyOf(frequency, capacity);
+        collectionFrequency = collectionFrequency == null ? new long[capacity] :
+                Arrays.copyOf(collectionFrequency, capacity);
+        length = length == null ? new int[capacity] : Arrays.copyOf(length, capacity);
+        maxFrequency = maxFrequency == null ? new int[capacity] : Arrays.copyOf(maxFrequency, capacity);
+        invertedIndexPtr = invertedIndexPtr == null ? new long[capacity] : Arrays.copyOf(invertedIndexPtr, capacity);
+    }
+
     /**
      * Create a new RandomAccessFile to write the tokens inverted index into.
      * If such a file already exists, first remove it.
@@ -70,7 +107,8 @@ public class TokensIndex implements Serializable {
                 file.delete();
             }
             this.invertedIndexFile = new RandomAccessFile(this.dir + "/" + TOKEN_INVERTED_INDEX_FILE, "rw");
-        } catch (FileNotFoundException e) {
+            this.invertedIndexOutput = new PostingsOutput(invertedIndexFile);
+        } catch (IOException e) {
             System.out.println("Error occurred while creating the tokens_inverted_index file");
             e.printStackTrace();
             System.exit(1);
@@ -81,167 +119,548 @@ public class TokensIndex implements Serializable {
      * Insert the given information of token properties into the index format that should be saved.
      * @param tokensData the data of the token containing its pointer/prefix length and token length as created in the KFront class.
      * @param tokensVals a list of reviewId-num appearances of reviews containing every token and the number the token appeared in every review.
-     * @param concatString the concatenated string of all tokens in the collection, created by the KFront class.
-     */
-    public void insertData(List<List<Integer>> tokensData, ArrayList<ArrayList<Integer>> tokensVals, String concatString){
-        dictString = concatString;
-        int offset = 0;
-        for (int i=0; i< tokensData.size(); i++){
-            List<Integer> tokenData = tokensData.get(i);
-            List<Integer> tokenVal = tokensVals.get(i);
-            TokenInfo token = new TokenInfo();
-            token.length = tokenData.get(TOKEN_LENGTH).shortValue();
-            token.frequency = (short) (tokenVal.size() / 2);
-            token.collectionFrequency = (short) subListVals(tokenVal, "even").stream().mapToInt(Integer::intValue).sum();
-            numTokens += token.getCollectionFrequency();
-            try {
-                token.invertedIndexPtr = (int) this.invertedIndexFile.getFilePointer();
-            } catch (IOException e) {
-                System.out.println("Error occurred while accessing the token_inverted_index file");
-                e.printStackTrace();
-                System.exit(1);
-            }
-            saveInvertedIndex(tokenVal);
-            if (offset == 0){
-                token.stringInfo = tokenData.get(POINTER_INDEX).shortValue();
-            } else {
-                token.stringInfo = tokenData.get(PREFIX_INDEX).shortValue();
-            }
-            offset++;
-            offset = offset % k;
-            this.data.add(token);
+     * @param concatBytes the concatenated bytes of all tokens in the collection, created by the KFront class.
+     */
+    public void insertData(List<List<Integer>> tokensData, List<IntList> tokensVals, byte[] concatBytes){
+        setDict(concatBytes);
+        Iterator<IntList> vals = tokensVals.iterator();
+        for (List<Integer> tokenData : tokensData) {  // the table of KFront is a linked list, so it is not indexed
+            insertToken(tokenData, vals.next());
         }
+        closeInvertedIndex();
     }
 
     /**
-     * Create a sub list of the given list containing only the odd/even elements in the array
-     * @param inputList the list that should be sliced
-     * @param type can be `odd` or `even`
-     * @return a List of integers containing only the elements in odd/even indices of the input array 
+     * Set the concatenated bytes of all tokens in the collection, created by the KFront class.
      */
-    private List<Integer> subListVals(List<Integer> inputList, String type){
-        int first = 0;
-        List<Integer> subList = new ArrayList<>();
-        if (type.equals("even")){ first = 1; }
-        for (int i = first; i < inputList.size(); i = i + 2){
-            subList.add(inputList.get(i));
+    public void setDict(byte[] concatBytes) {
+        dict = ByteBuffer.wrap(concatBytes);
+    }
+
+    /**
+     * Insert the information of the next token to the index and write its inverted index to the disk. Tokens must be
+     * inserted in the same (sorted) order in which they appear in the KFront table.
+     * @param tokenData the data of the token containing its pointer/prefix length and token length as created in the KFront class.
+     * @param tokenVal the reviewId-num appearances pairs of the reviews containing the token, sorted by review id.
+     */
+    public void insertToken(List<Integer> tokenData, IntList tokenVal){
+        int count = tokenVal.size() / 2;
+        startToken(tokenData, count);
+        for (int i = 0; i < count; i++) {
+            addPosting(tokenVal.getInt(2 * i), tokenVal.getInt(2 * i + 1));
         }
-        return subList;
+        finishToken();
     }
 
     /**
-     * Encodes the integers given in the integer list using delta encoding, and saves them in the invertedIndexFile.
-     * @param valsList a list with number that should be encoded and saved in the inverted index file.
+     * Start inserting the next token, whose postings are then added one at a time with addPosting() and encoded into
+     * the inverted index as they are added, so they are never all held in memory. The token is completed with
+     * finishToken(). Tokens must be inserted in the same (sorted) order in which they appear in the KFront table.
+     * @param tokenData the data of the token containing its pointer/prefix length and token length as created in the KFront class.
+     * @param count the number of reviews containing the token.
      */
-    private void saveInvertedIndex(List<Integer> valsList) {
+    public void startToken(List<Integer> tokenData, int count) {
+        if (size == stringInfo.length) {
+            allocate(Math.max(2 * size, INITIAL_CAPACITY));
+        }
+        int token = size;
+        if (token % k == 0){
+            stringInfo[token] = tokenData.get(POINTER_INDEX);
+        } else {
+            stringInfo[token] = tokenData.get(PREFIX_INDEX);
+        }
+        length[token] = tokenData.get(TOKEN_LENGTH);
+        frequency[token] = count;
+        collectionFrequency[token] = 0;
+        maxFrequency[token] = 0;
+        invertedIndexPtr[token] = invertedIndexOutput.position();
         try {
-            // change the reviewIds (odd indices) to a difference list (except for the first id):
-            for (int i = valsList.size()-2; i>0; i = i - 2){
-                valsList.set(i, valsList.get(i) - valsList.get(i-2));
-            }
+            postingsWriter = codec.writer(invertedIndexOutput, count);
+        } catch (IOException e) {
+            System.out.println("Error occurred while saving invertedIndex bytes");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
 
-            StringBuilder stringCodes = new StringBuilder();
-            for (int num : valsList) {
-                String code = Encoding.deltaEncode(num);
-                stringCodes.append(code);
-            }
-            byte[] codeBytes = Encoding.toByteArray(stringCodes.toString());
-            this.invertedIndexFile.write(codeBytes);
-        } catch (Exception e){
+    /**
+     * Add the next posting of the token that is being inserted. Postings must be added by increasing review id.
+     * @param freq the number of times the token appears in the review.
+     */
+    public void addPosting(int reviewId, int freq) {
+        collectionFrequency[size] += freq;
+        maxFrequency[size] = Math.max(maxFrequency[size], freq);
+        try {
+            postingsWriter.add(reviewId, freq);
+        } catch (Exception e) {
+            System.out.println("Error occurred while saving invertedIndex bytes");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Complete the token that is being inserted, once all of its postings were added.
+     */
+    public void finishToken() {
+        try {
+            skipBytes += postingsWriter.finish();
+        } catch (Exception e) {
             System.out.println("Error occurred while saving invertedIndex bytes");
             e.printStackTrace();
             System.exit(1);
         }
+        postingsWriter = null;
+        numTokens += collectionFrequency[size];
+        size++;
+    }
+
+    /**
+     * Write the rest of the inverted index to the disk and close its file, once all tokens were inserted.
+     */
+    public void closeInvertedIndex() {
+        try {
+            invertedIndexOutput.flush();
+            invertedIndexFile.close();
+        } catch (IOException e) {
+            System.out.println("Error occurred while closing the token_inverted_index file");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the number of tokens in the dictionary, without repetitions.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @return the number of reviews containing the token at the given index.
+     */
+    public int getFrequency(int tokenIndex){
+        return frequency[tokenIndex];
     }
 
     /**
-     * @return get the entire data of all tokens.
+     * @return the number of times the token at the given index appears in the collection.
      */
-    public ArrayList<TokenInfo> get(){
-        return data;
+    public long getCollectionFrequency(int tokenIndex){
+        return collectionFrequency[tokenIndex];
     }
 
     /**
-     * get the data of a specific token.
-     * @param tokenIndex the index of the token that should be retrieved.
-     * @return the information of the token that was queried.
+     * @return the largest number of times the token at the given index appears in a single review.
      */
-    public TokenInfo get(int tokenIndex){
-        return data.get(tokenIndex);
+    public int getMaxFrequency(int tokenIndex){
+        return maxFrequency[tokenIndex];
     }
 
-    public int getNumTokens(){
+    /**
+     * @return the offset of the inverted index of the token at the given index in the inverted index file.
+     */
+    public long getInvertedIdxPtr(int tokenIndex){
+        return invertedIndexPtr[tokenIndex];
+    }
+
+    public long getNumTokens(){
         return numTokens;
     }
 
+    public int getSkipInterval(){
+        return skipInterval;
+    }
+
+    /**
+     * @return the number of bytes used by skip entries in the inverted index file.
+     */
+    public long getSkipBytes(){
+        return skipBytes;
+    }
+
+    /**
+     * @return the codec the posting lists of the inverted index are encoded with.
+     */
+    public PostingsCodec getCodec(){
+        return codec;
+    }
+
     /**
-     * Retrieve the string word of the product at the given index.
+     * Retrieve the string word of the token at the given index.
      */
     public String getWordAt(int index) {
+        return new String(getWordBytes(index), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Retrieve the UTF-8 bytes of the token at the given index.
+     */
+    private byte[] getWordBytes(int index) {
         int blockStart = index - (index % k);
-        int startStringPtr = data.get(blockStart).stringInfo;
-        int token_length = data.get(blockStart).length;
-        // Add the first word of the block
-        StringBuilder str = new StringBuilder(dictString.substring(startStringPtr, startStringPtr +  token_length));
-        int read = token_length;  // Tracks how much was read from the string
-        int offset = 0;
-        while (blockStart + offset != index) {
-            offset++;
-            int prefixLength = data.get(blockStart + offset).stringInfo;
-            token_length = data.get(blockStart + offset).length;
-            str.delete(prefixLength, str.length());
-            str.append(dictString, startStringPtr + read, startStringPtr + read + token_length - prefixLength);
-            read += token_length - prefixLength;
+        int pos = stringInfo[blockStart];
+        byte[] word = new byte[length[index]];
+        int prefixLength = 0;
+        // Every word of the block overwrites the bytes after its prefix, so after the word at the given index is read
+        // the buffer holds it (bytes beyond its length are not needed, and are not copied)
+        for (int i = blockStart; i <= index; i++) {
+            if (i > blockStart) {
+                prefixLength = stringInfo[i];
+            }
+            int suffixLength = length[i] - prefixLength;
+            for (int j = 0; j < suffixLength && prefixLength + j < word.length; j++) {
+                word[prefixLength + j] = dict.get(pos + j);
+            }
+            pos += suffixLength;
         }
-        return str.toString();
+        return word;
     }
 
     /**
-     * Search the given string in the tokenIndex dictionary, using binary search.
+     * Build a perfect hash from the tokens to their indices, so search() finds a token without a binary search over
+     * the blocks. Should be called after all tokens were inserted, and the hash is saved with the index.
+     */
+    public void buildTermHash() {
+        byte[][] words = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            words[i] = getWordBytes(i);
+        }
+        termHash = TermHash.build(words);
+    }
+
+    /**
+     * @return the perfect hash of the tokens, or null if the index does not have one.
+     */
+    public TermHash getTermHash() {
+        return termHash;
+    }
+
+    /**
+     * Search the given string in the tokenIndex dictionary.
+     * @return the index of the given string, or -1 if it is not in the dictionary.
      */
     public int search(String str) {
-        int high = data.size() / k;
+        return search(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Search the given UTF-8 encoded string in the tokenIndex dictionary. The block that may hold the string is found
+     * by the term hash if the index has one, or else by a binary search over the block heads. The block is then
+     * scanned while decoding it once. The string is compared directly to the concatenated bytes (as unsigned bytes),
+     * so no word is decoded into a new object.
+     * @return the index of the given string, or -1 if it is not in the dictionary.
+     */
+    public int search(byte[] str) {
+        if (termHash != null) {
+            int index = termHash.get(str);
+            if (index == -1) {
+                return -1;
+            }
+            // The fingerprint may match a string that is not in the dictionary, so compare with the word itself
+            return searchBlock(str, index - (index % k)) == index ? index : -1;
+        }
+        int block = findBlock(str);
+        return block == -1 ? -1 : searchBlock(str, block * k);
+    }
+
+    /**
+     * Find the last block whose first word is not larger than the given string, using binary search.
+     * @return the number of the block, or -1 if str is smaller than all words in the dictionary.
+     */
+    private int findBlock(byte[] str) {
         int low = 0;
-        int cur_block = high / 2;
+        int high = (size + k - 1) / k - 1;
+        if (high < 0 || compareToBlockHead(str, 0) < 0) {
+            return -1;
+        }
         while (low < high) {
-            int cmp = str.compareTo(getWordAt(k * cur_block));
-            if (cmp < 0) {
-                high = cur_block - 1;  // str is in a previous block
-            } else if (cmp > 0) {
-                // Checks the first word of the next block (if it exists)
-                if (k * (cur_block + 1) < data.size() && str.compareTo(getWordAt(k * (cur_block + 1))) < 0) {
-                    // str is in inside this block
-                    break;
+            int mid = (low + high + 1) >>> 1;
+            if (compareToBlockHead(str, mid) < 0) {
+                high = mid - 1;
+            } else {
+                low = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Return an enumerator over the tokens that start with the given prefix, in sorted order.
+     */
+    public TermsEnum termsWithPrefix(String prefix) {
+        byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+        return new TermsEnum(prefixBytes, prefixBytes, null);
+    }
+
+    /**
+     * Return an enumerator over the tokens that are not smaller than lower and smaller than upper, in sorted order.
+     * @param lower the first token of the range, or null to start from the first token in the dictionary.
+     * @param upper the end of the range (exclusive), or null to continue to the last token in the dictionary.
+     */
+    public TermsEnum termsBetween(String lower, String upper) {
+        return new TermsEnum(lower == null ? null : lower.getBytes(StandardCharsets.UTF_8), null,
+                upper == null ? null : upper.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Enumerates a range of tokens of the dictionary in sorted order. The front-coded blocks are decoded sequentially,
+     * so every token costs only the copy of its suffix.
+     */
+    public class TermsEnum {
+        private final byte[] prefix;  // the enumeration stops at the first token without this prefix, if not null
+        private final byte[] upper;  // the enumeration stops at the first token not smaller than upper, if not null
+        private byte[] word = new byte[32];  // the bytes of the current token
+        private int wordLength;
+        private int index;  // the index of the current token
+        private int pos;  // the position of the suffix of the next token in the concatenated bytes
+        private boolean pending = false;  // true if the current token was decoded but not returned by next() yet
+        private boolean exhausted = false;
+
+        private TermsEnum(byte[] lower, byte[] prefix, byte[] upper) {
+            this.prefix = prefix;
+            this.upper = upper;
+            int block = lower == null ? -1 : findBlock(lower);
+            index = Math.max(block, 0) * k - 1;
+            if (lower != null) {
+                // Skip the tokens of the block that are smaller than lower
+                pending = readNext();
+                while (pending && compare(word, wordLength, lower) < 0) {
+                    pending = readNext();
                 }
-                low = cur_block + 1;  // str is in a higher block
+            }
+        }
+
+        /**
+         * Move to the next token in the range.
+         * @return false if there are no more tokens in the range.
+         */
+        public boolean next() {
+            if (exhausted) {
+                return false;
+            }
+            if (pending) {
+                pending = false;
+            } else if (!readNext()) {
+                return false;
+            }
+            if ((prefix != null && !startsWith(prefix)) || (upper != null && compare(word, wordLength, upper) >= 0)) {
+                exhausted = true;
+            }
+            return !exhausted;
+        }
+
+        /**
+         * Decode the token after the current one.
+         * @return false if the current token is the last token in the dictionary.
+         */
+        private boolean readNext() {
+            if (index + 1 >= size) {
+                exhausted = true;
+                return false;
+            }
+            index++;
+            int prefixLength = 0;
+            if (index % k == 0) {
+                pos = stringInfo[index];
             } else {
-                return k * cur_block;  //  str is the first word in this block
+                prefixLength = stringInfo[index];
+            }
+            if (word.length < length[index]) {
+                word = Arrays.copyOf(word, Math.max(2 * word.length, length[index]));
             }
-            cur_block = (high + low) / 2;
+            for (int i = prefixLength; i < length[index]; i++) {
+                word[i] = dict.get(pos++);
+            }
+            wordLength = length[index];
+            return true;
+        }
+
+        private boolean startsWith(byte[] bytes) {
+            if (wordLength < bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (word[i] != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the index of the current token in the dictionary.
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * @return the current token.
+         */
+        public String term() {
+            return new String(word, 0, wordLength, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return the number of reviews containing the current token.
+         */
+        public int getFrequency() {
+            return frequency[index];
+        }
+
+        /**
+         * @return the number of times the current token appears in the collection.
+         */
+        public long getCollectionFrequency() {
+            return collectionFrequency[index];
         }
+    }
 
-        // Search the block for str
-        int blockStart = k * cur_block;
-        for (int offset = 0; offset < k && blockStart + offset < data.size(); offset++) {
-            if (getWordAt(blockStart + offset).equals(str)) {  // A bit wasteful, but..
-                return blockStart + offset;
+    /**
+     * Compare the first length bytes of the given array to the given string, as unsigned bytes.
+     */
+    private static int compare(byte[] bytes, int length, byte[] str) {
+        int n = Math.min(length, str.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Byte.toUnsignedInt(bytes[i]) - Byte.toUnsignedInt(str[i]);
+            if (cmp != 0) {
+                return cmp;
             }
         }
+        return length - str.length;
+    }
+
+    /**
+     * Compare the given string to the first word of the given block, by unsigned bytes.
+     */
+    private int compareToBlockHead(byte[] str, int block) {
+        int start = stringInfo[block * k];
+        int headLength = length[block * k];
+        int n = Math.min(headLength, str.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Byte.toUnsignedInt(str[i]) - Byte.toUnsignedInt(dict.get(start + i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return str.length - headLength;
+    }
+
+    /**
+     * Scan the block that starts at the given index for the given string. Since the words of the block are sorted,
+     * a word that shares fewer characters with its previous word than the previous word shares with str must be
+     * larger than str, and a word that shares more characters with its previous word must be smaller than str, so
+     * only words that share exactly as many characters are compared, starting from the first character not compared
+     * yet.
+     */
+    private int searchBlock(byte[] str, int blockStart) {
+        int pos = stringInfo[blockStart];  // the position of the current word's suffix in the concatenated string
+        int matched = 0;  // the length of the common prefix of str and the current word
+        int prefixLength = 0;
+        for (int index = blockStart; index < blockStart + k && index < size; index++) {
+            if (index > blockStart) {
+                prefixLength = stringInfo[index];
+            }
+            int wordLength = length[index];
+            if (prefixLength < matched) {
+                return -1;  // this word, and all words after it, are larger than str
+            }
+            if (prefixLength == matched) {
+                int wordStart = pos - prefixLength;  // where the word would start, had it been stored in full
+                int i = matched;
+                while (i < wordLength && i < str.length && dict.get(wordStart + i) == str[i]) {
+                    i++;
+                }
+                matched = i;
+                if (i == wordLength && i == str.length) {
+                    return index;
+                }
+                if (i == str.length || (i < wordLength &&
+                        Byte.toUnsignedInt(dict.get(wordStart + i)) > Byte.toUnsignedInt(str[i]))) {
+                    return -1;  // the word is larger than str
+                }
+            }
+            pos += wordLength - prefixLength;
+        }
         return -1;
     }
 
-    private void readObject(ObjectInputStream inputFile) throws IOException, ClassNotFoundException {
-        k = inputFile.readInt();
-        dictString = inputFile.readUTF();
-        numTokens = inputFile.readInt();
-        data = (ArrayList<TokenInfo>) inputFile.readObject();
+    @Override
+    public int getFileType() {
+        return IndexFile.TOKENS_INDEX;
+    }
 
+    /**
+     * Write the index as sections of an index file: a header with the scalar fields, the concatenated string, and a
+     * section for every field of the tokens, holding the array of that field. All fields are written with variable
+     * byte encoding, so small values take a single byte while large ones are not truncated. The inverted index
+     * pointers are increasing, so only the difference from the previous pointer is written.
+     */
+    @Override
+    public void writeSections(IndexFile.Writer writer) throws IOException {
+        DataOutputStream header = writer.addSection(HEADER_SECTION);
+        header.writeInt(k);
+        header.writeLong(numTokens);
+        header.writeInt(skipInterval);
+        header.writeLong(skipBytes);
+        header.writeInt(codec.getId());
+        header.writeInt(size);
+        byte[] dictBytes = new byte[dict.limit()];
+        dict.duplicate().get(dictBytes);
+        writer.addSection(DICTIONARY_SECTION).write(dictBytes);
+        DataOutputStream stringInfos = writer.addSection(STRING_INFO_SECTION);
+        DataOutputStream frequencies = writer.addSection(FREQUENCY_SECTION);
+        DataOutputStream collectionFrequencies = writer.addSection(COLLECTION_FREQUENCY_SECTION);
+        DataOutputStream lengths = writer.addSection(LENGTH_SECTION);
+        DataOutputStream maxFrequencies = writer.addSection(MAX_FREQUENCY_SECTION);
+        DataOutputStream invertedIndexPtrs = writer.addSection(INVERTED_INDEX_PTR_SECTION);
+        for (int i = 0; i < size; i++) {
+            Encoding.writeVarint(stringInfos, stringInfo[i]);
+            Encoding.writeVarint(frequencies, frequency[i]);
+            Encoding.writeVarint(collectionFrequencies, collectionFrequency[i]);
+            Encoding.writeVarint(lengths, length[i]);
+            Encoding.writeVarint(maxFrequencies, maxFrequency[i]);
+            Encoding.writeVarint(invertedIndexPtrs, invertedIndexPtr[i] - (i > 0 ? invertedIndexPtr[i - 1] : 0));
+        }
+        if (termHash != null) {
+            termHash.write(writer.addSection(TERM_HASH_SECTION));
+        }
     }
 
-    private void writeObject(ObjectOutputStream outputFile) throws IOException {
-        outputFile.writeInt(this.k);
-        outputFile.writeUTF(this.dictString);
-        outputFile.writeInt(this.numTokens);
-        outputFile.writeObject(this.data);
+    /**
+     * Load a tokens index that was saved with IndexFile.save().
+     */
+    public static TokensIndex load(String path) throws IOException {
+        IndexFile file = IndexFile.open(path, IndexFile.TOKENS_INDEX);
+        TokensIndex index = new TokensIndex();
+        ByteBuffer header = file.getSection(HEADER_SECTION);
+        index.k = header.getInt();
+        index.numTokens = header.getLong();
+        index.skipInterval = header.getInt();
+        index.skipBytes = header.getLong();
+        index.codec = PostingsCodec.forId(header.getInt(), index.skipInterval);
+        index.size = header.getInt();
+        index.dict = file.getSection(DICTIONARY_SECTION);
+        index.allocate(index.size);
+        ByteBuffer stringInfos = file.getSection(STRING_INFO_SECTION);
+        ByteBuffer frequencies = file.getSection(FREQUENCY_SECTION);
+        ByteBuffer collectionFrequencies = file.getSection(COLLECTION_FREQUENCY_SECTION);
+        ByteBuffer lengths = file.getSection(LENGTH_SECTION);
+        ByteBuffer maxFrequencies = file.getSection(MAX_FREQUENCY_SECTION);
+        ByteBuffer invertedIndexPtrs = file.getSection(INVERTED_INDEX_PTR_SECTION);
+        long invertedIndexPtr = 0;
+        for (int i = 0; i < index.size; i++) {
+            index.stringInfo[i] = (int) Encoding.readVarint(stringInfos);
+            index.frequency[i] = (int) Encoding.readVarint(frequencies);
+            index.collectionFrequency[i] = Encoding.readVarint(collectionFrequencies);
+            index.length[i] = (int) Encoding.readVarint(lengths);
+            index.maxFrequency[i] = (int) Encoding.readVarint(maxFrequencies);
+            invertedIndexPtr += Encoding.readVarint(invertedIndexPtrs);
+            index.invertedIndexPtr[i] = invertedIndexPtr;
+        }
+        if (file.hasSection(TERM_HASH_SECTION)) {
+            index.termHash = TermHash.read(file.getSection(TERM_HASH_SECTION));
+        }
+        return index;
     }
 }
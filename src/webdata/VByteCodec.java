@@ -0,0 +1,30 @@
+package webdata;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes every number of a block with variable byte encoding: 7 bits per byte, where the high bit of a byte is set
+ * if more bytes follow. Simple and fast to decode, but takes at least a whole byte per number.
+ */
+public class VByteCodec extends BlockPostingsCodec {
+    @Override
+    public int getId() {
+        return VBYTE;
+    }
+
+    @Override
+    protected void encodeBlock(int[] values, int n, DataOutputStream out) throws IOException {
+        for (int i = 0; i < n; i++) {
+            Encoding.writeVarint(out, values[i]);
+        }
+    }
+
+    @Override
+    protected void decodeBlock(ByteBuffer in, int[] values, int n) {
+        for (int i = 0; i < n; i++) {
+            values[i] = (int) Encoding.readVarint(in);
+        }
+    }
+}